@@ -0,0 +1,243 @@
+import edu.princeton.cs.algs4.StdIn;
+import edu.princeton.cs.algs4.StdOut;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/******************************************************************************
+ *  Compilation:  javac-algs4 ReservoirSampler.java
+ *  Execution:    java-algs4 ReservoirSampler k [file [chunks]]
+ *
+ *  Picks k items uniformly at random from a stream of unknown length,
+ *  generalizing RandomWord (k = 1) in two ways.
+ *
+ *  Skipping (Algorithm L, Li 1994): RandomWord flips a coin for every word.
+ *  Instead, this sampler computes how many items to skip before the next
+ *  one that enters the reservoir; the skip lengths grow geometrically, so
+ *  only about k * log(N / k) random numbers are drawn for N items. Skipped
+ *  items are never even turned into Strings.
+ *
+ *  Chunks: a file is split into byte ranges that are sampled in parallel,
+ *  each by its own sampler. The partial reservoirs are then merged: each
+ *  of the k final items comes from chunk i with probability (items of
+ *  chunk i not yet used) / (all items not yet used), taken at random from
+ *  that chunk's reservoir. That is exactly how k items drawn without
+ *  replacement from the whole file would be spread over the chunks, so
+ *  the merged sample is uniform too.
+ *
+ *  Words are whitespace separated and read from a memory-mapped file.
+ *  Without a file, words are read from standard input as in RandomWord.
+ *
+ *  % java-algs4 ReservoirSampler 3
+ *  standard input: first second third fourth fifth
+ *  [Press Ctrl+D]
+ *  fourth
+ *  second
+ *  fifth
+ *****************************************************************************/
+
+public class ReservoirSampler<Item> {
+    private final int k;                // sample size
+    private final Object[] reservoir;
+    private final SplittableRandom rng;
+    private long count;                 // items seen so far
+    private long next;                  // (1-based) number of the next item to enter the reservoir
+    private double w;                   // Algorithm L state
+
+    // an empty sampler of k items
+    public ReservoirSampler(int k, SplittableRandom rng) {
+        if (k <= 0) throw new IllegalArgumentException("k must be greater than 0");
+        this.k = k;
+        this.reservoir = new Object[k];
+        this.rng = rng;
+        this.count = 0;
+        this.w = Math.exp(Math.log(random()) / k);
+        this.next = k + skip();
+    }
+
+    // uniform in (0, 1], log() of it is finite
+    private double random() {
+        return 1.0 - this.rng.nextDouble();
+    }
+
+    // 1 + number of items to pass over before the next replacement
+    private long skip() {
+        double jump = Math.floor(Math.log(random()) / Math.log(1.0 - this.w));
+        return jump >= Long.MAX_VALUE / 2 ? Long.MAX_VALUE / 2 : (long) jump + 1;
+    }
+
+    /*
+     * counts the next item and returns the reservoir slot it must be stored in
+     * with set(), or -1 if it is not sampled (and can be skipped unread)
+     */
+    public int offer() {
+        this.count++;
+        if (this.count <= this.k) return (int) (this.count - 1);
+        if (this.count < this.next) return -1;
+
+        int slot = this.rng.nextInt(this.k);
+        this.w *= Math.exp(Math.log(random()) / this.k);
+        this.next += skip();
+        return slot;
+    }
+
+    // stores an item in the slot returned by offer()
+    public void set(int slot, Item item) {
+        this.reservoir[slot] = item;
+    }
+
+    // offers one item
+    public void add(Item item) {
+        int slot = offer();
+        if (slot >= 0) set(slot, item);
+    }
+
+    // number of items seen
+    public long count() {
+        return this.count;
+    }
+
+    // the current sample, min(k, count()) items
+    @SuppressWarnings("unchecked")
+    public List<Item> sample() {
+        List<Item> items = new ArrayList<>();
+        for (int i = 0; i < Math.min(this.k, this.count); i++) items.add((Item) this.reservoir[i]);
+        return items;
+    }
+
+    /*
+     * merges the samples of disjoint parts of one stream into a uniform sample of
+     * min(k, total count) items of the whole stream
+     */
+    public static <Item> List<Item> merge(List<ReservoirSampler<Item>> parts, int k, SplittableRandom rng) {
+        int m = parts.size();
+        long[] unused = new long[m];
+        List<List<Item>> pools = new ArrayList<>();
+        long total = 0;
+        for (int i = 0; i < m; i++) {
+            unused[i] = parts.get(i).count();
+            pools.add(parts.get(i).sample());
+            total += unused[i];
+        }
+
+        List<Item> merged = new ArrayList<>();
+        while (merged.size() < k && total > 0) {
+            // chunk i with probability unused[i] / total
+            long pick = rng.nextLong(total);
+            int i = 0;
+            while (pick >= unused[i]) pick -= unused[i++];
+
+            // a random item of that chunk's reservoir, not used before
+            List<Item> pool = pools.get(i);
+            int j = rng.nextInt(pool.size());
+            merged.add(pool.get(j));
+            pool.set(j, pool.get(pool.size() - 1));
+            pool.remove(pool.size() - 1);
+            unused[i]--;
+            total--;
+        }
+        return merged;
+    }
+
+    // samples k words of a file, split into chunks sampled in parallel
+    public static List<String> sampleFile(Path file, int k, int chunks, long seed) {
+        if (chunks <= 0) throw new IllegalArgumentException("chunks must be greater than 0");
+        SplittableRandom master = new SplittableRandom(seed);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+
+            List<ReservoirSampler<String>> parts = new ArrayList<>();
+            for (int c = 0; c < chunks; c++) parts.add(new ReservoirSampler<>(k, master.split()));
+
+            IntStream.range(0, chunks).parallel().forEach(c -> {
+                Words words = new Words(channel, size);
+                sampleRange(words, size * c / chunks, size * (c + 1) / chunks, parts.get(c));
+            });
+            return merge(parts, k, master);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // offers every word that STARTS in [from, to) to the sampler
+    private static void sampleRange(Words words, long from, long to, ReservoirSampler<String> sampler) {
+        long at = from;
+        // a word running into the range from the left belongs to the previous chunk
+        if (at > 0 && !Words.isSpace(words.byteAt(at - 1))) {
+            while (at < to && !Words.isSpace(words.byteAt(at))) at++;
+        }
+        while (true) {
+            while (at < to && Words.isSpace(words.byteAt(at))) at++;
+            if (at >= to) return;
+            long start = at;
+            while (at < words.size && !Words.isSpace(words.byteAt(at))) at++;
+            int slot = sampler.offer();
+            if (slot >= 0) sampler.set(slot, words.decode(start, at));
+        }
+    }
+
+    // bytes of a file, memory-mapped one window at a time
+    private static class Words {
+        private static final int WINDOW = 1 << 28;
+
+        private final FileChannel channel;
+        private final long size;
+        private long windowStart = -1;
+        private MappedByteBuffer window;
+
+        Words(FileChannel channel, long size) {
+            this.channel = channel;
+            this.size = size;
+        }
+
+        static boolean isSpace(int b) {
+            return b == ' ' || b == '\n' || b == '\r' || b == '\t' || b == '\f';
+        }
+
+        int byteAt(long at) {
+            if (this.windowStart < 0 || at < this.windowStart || at - this.windowStart >= this.window.limit()) {
+                try {
+                    this.windowStart = at;
+                    this.window = this.channel.map(FileChannel.MapMode.READ_ONLY, at, Math.min(WINDOW, this.size - at));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return this.window.get((int) (at - this.windowStart));
+        }
+
+        String decode(long from, long to) {
+            byte[] bytes = new byte[(int) (to - from)];
+            for (int i = 0; i < bytes.length; i++) bytes[i] = (byte) byteAt(from + i);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    public static void main(String[] args) {
+        int k = Integer.parseInt(args[0]);
+        List<String> sample;
+        if (args.length > 1) {
+            int chunks = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+            sample = sampleFile(Paths.get(args[1]), k, chunks, System.nanoTime());
+        } else {
+            ReservoirSampler<String> sampler = new ReservoirSampler<>(k, new SplittableRandom());
+            while (!StdIn.isEmpty()) {
+                // skipped words still have to be read from standard input
+                String word = StdIn.readString();
+                sampler.add(word);
+            }
+            sample = sampler.sample();
+        }
+        for (String word : sample) StdOut.println(word);
+    }
+}
@@ -0,0 +1,216 @@
+import edu.princeton.cs.algs4.StdOut;
+import edu.princeton.cs.algs4.Stopwatch;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/******************************************************************************
+ *  Compilation:  javac-algs4 BitSlicedPercolation.java
+ *  Execution:    java-algs4 BitSlicedPercolation n p batches [seed]
+ *
+ *  Runs 64 independent percolation trials at once, one per bit of a long.
+ *
+ *  open[i] holds site i of all 64 trials: bit t is set if the site is open
+ *  in trial t. Fullness is computed for all trials together by spreading
+ *  "full" from the top row with bitwise operations,
+ *
+ *      full[i] |= open[i] & (full[up] | full[down] | full[left] | full[right])
+ *
+ *  in alternating top-down and bottom-up sweeps (each row also swept left
+ *  and right) until a sweep changes nothing. The bottom row then tells, per
+ *  bit, which trials percolate. Every word operation works on 64 trials,
+ *  and there is no union-find and no branching on individual trials.
+ *
+ *  Each site is open with probability p independently, which is the
+ *  fixed-p model (P(percolates | p)), not the "open until it percolates"
+ *  model of PercolationStats. The random bits are drawn 64 trials at a
+ *  time too: for p = 0.b1 b2 ... b32 in binary, combining 32 random words
+ *  from the last digit up with OR (digit 1) or AND (digit 0) gives each bit
+ *  probability p, to 32 bits of precision.
+ *
+ *  The test client estimates P(percolates | p) and checks every trial of
+ *  the first batch against Percolation.
+ *****************************************************************************/
+
+public class BitSlicedPercolation {
+    public static final int TRIALS = 64;
+
+    private final int n;            // stores grid size
+    private final long[] open;      // open[i], bit t = site i open in trial t, row-major from 0
+    private final long[] full;      // full[i], bit t = site i full in trial t
+
+    // creates an n-by-n grid for 64 trials
+    public BitSlicedPercolation(int n) {
+        if (n <= 0) throw new IllegalArgumentException("n must be an integer greater than 0");
+        if (n > 46340) throw new IllegalArgumentException("n must be at most 46340 (n * n must fit in an int)");
+
+        this.n = n;
+        this.open = new long[n * n];
+        this.full = new long[n * n];
+    }
+
+    /*
+     * opens each site of each of the 64 trials with probability p, then returns the
+     * trials that percolate: bit t set means trial t percolates
+     */
+    public long run(double p, SplittableRandom rng) {
+        if (p < 0.0 || p > 1.0) throw new IllegalArgumentException("p must be between 0 and 1");
+
+        long bits = (long) (p * (1L << 32));    // p as a 32 bit binary fraction
+        for (int i = 0; i < this.open.length; i++) {
+            this.open[i] = bits >= (1L << 32) ? -1L : randomMask(bits, rng);
+        }
+        return this.percolates();
+    }
+
+    // each bit set with probability bits / 2^32
+    private static long randomMask(long bits, SplittableRandom rng) {
+        long mask = 0;
+        for (int digit = 0; digit < 32; digit++) {
+            if ((bits & (1L << digit)) != 0) mask |= rng.nextLong();
+            else mask &= rng.nextLong();
+        }
+        return mask;
+    }
+
+    // computes full[] from open[] and returns the trials whose bottom row has a full site
+    private long percolates() {
+        int n = this.n;
+        long[] open = this.open;
+        long[] full = this.full;
+
+        Arrays.fill(full, 0L);
+        for (int col = 0; col < n; col++) full[col] = open[col];
+
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+
+            // top-down
+            for (int row = 0; row < n; row++) {
+                int base = row * n;
+                for (int col = 0; col < n; col++) {
+                    int i = base + col;
+                    long from = row > 0 ? full[i - n] : 0L;
+                    if (col > 0) from |= full[i - 1];
+                    long next = full[i] | (open[i] & from);
+                    if (next != full[i]) {
+                        full[i] = next;
+                        changed = true;
+                    }
+                }
+                for (int col = n - 2; col >= 0; col--) {
+                    int i = base + col;
+                    long next = full[i] | (open[i] & full[i + 1]);
+                    if (next != full[i]) {
+                        full[i] = next;
+                        changed = true;
+                    }
+                }
+            }
+            if (!changed) break;
+            changed = false;
+
+            // bottom-up
+            for (int row = n - 1; row >= 0; row--) {
+                int base = row * n;
+                for (int col = n - 1; col >= 0; col--) {
+                    int i = base + col;
+                    long from = row < n - 1 ? full[i + n] : 0L;
+                    if (col < n - 1) from |= full[i + 1];
+                    long next = full[i] | (open[i] & from);
+                    if (next != full[i]) {
+                        full[i] = next;
+                        changed = true;
+                    }
+                }
+                for (int col = 1; col < n; col++) {
+                    int i = base + col;
+                    long next = full[i] | (open[i] & full[i - 1]);
+                    if (next != full[i]) {
+                        full[i] = next;
+                        changed = true;
+                    }
+                }
+            }
+        }
+
+        long percolating = 0L;
+        for (int i = (n - 1) * n; i < n * n; i++) percolating |= full[i];
+        return percolating;
+    }
+
+    // is the site (row, col) open in the given trial of the last run?
+    public boolean isOpen(int trial, int row, int col) {
+        return (this.open[this.xyTo1d(row, col)] & (1L << validTrial(trial))) != 0;
+    }
+
+    // is the site (row, col) full in the given trial of the last run?
+    public boolean isFull(int trial, int row, int col) {
+        return (this.full[this.xyTo1d(row, col)] & (1L << validTrial(trial))) != 0;
+    }
+
+    private static int validTrial(int trial) {
+        if (trial < 0 || trial >= TRIALS) throw new IllegalArgumentException(trial + " is not a valid trial");
+        return trial;
+    }
+
+    // translates 1-based (row, col) to the 0-based row-major index
+    private int xyTo1d(int row, int col) {
+        if (row <= 0 || row > n) throw new IllegalArgumentException(row + " is not a valid row index");
+        if (col <= 0 || col > n) throw new IllegalArgumentException(col + " is not a valid col index");
+        return this.n * (row - 1) + (col - 1);
+    }
+
+    // test client
+    public static void main(String[] args) {
+        int n = Integer.parseInt(args[0]);
+        double p = Double.parseDouble(args[1]);
+        int batches = Integer.parseInt(args[2]);
+        SplittableRandom rng = new SplittableRandom(args.length > 3 ? Long.parseLong(args[3]) : System.nanoTime());
+
+        BitSlicedPercolation sliced = new BitSlicedPercolation(n);
+        long percolating = 0;
+        double slicedTime = 0.0;
+        double separateTime = 0.0;
+        for (int b = 0; b < batches; b++) {
+            Stopwatch timer = new Stopwatch();
+            long mask = sliced.run(p, rng);
+            slicedTime += timer.elapsedTime();
+            percolating += Long.bitCount(mask);
+
+            // the same 64 trials as separate Percolation instances, timed,
+            // then checked trial by trial (untimed) for the first batch
+            if (b > 0) continue;
+            Percolation[] separate = new Percolation[TRIALS];
+            timer = new Stopwatch();
+            for (int t = 0; t < TRIALS; t++) {
+                separate[t] = new Percolation(n);
+                for (int row = 1; row <= n; row++) {
+                    for (int col = 1; col <= n; col++) if (sliced.isOpen(t, row, col)) separate[t].open(row, col);
+                }
+                separate[t].percolates();
+            }
+            separateTime = timer.elapsedTime();
+
+            for (int t = 0; t < TRIALS; t++) {
+                Percolation perc = separate[t];
+                if (perc.percolates() != ((mask & (1L << t)) != 0)) {
+                    throw new IllegalStateException("trial " + t + " differs from Percolation");
+                }
+                for (int row = 1; row <= n; row++) {
+                    for (int col = 1; col <= n; col++) {
+                        if (perc.isFull(row, col) != sliced.isFull(t, row, col)) {
+                            throw new IllegalStateException("trial " + t + " differs at (" + row + ", " + col + ")");
+                        }
+                    }
+                }
+            }
+        }
+
+        StdOut.printf("%-28s= %f%n", "P(percolates | p)", (double) percolating / ((long) batches * TRIALS));
+        StdOut.printf("%-28s= %d%n", "trials", (long) batches * TRIALS);
+        StdOut.printf("%-28s= %.3f ms%n", "bit-sliced, per 64 trials", 1000 * slicedTime / batches);
+        StdOut.printf("%-28s= %.3f ms%n", "Percolation, per 64 trials", 1000 * separateTime);
+    }
+}
@@ -0,0 +1,324 @@
+import edu.princeton.cs.algs4.StdOut;
+import edu.princeton.cs.algs4.StdRandom;
+import edu.princeton.cs.algs4.Stopwatch;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/******************************************************************************
+ *  Compilation:  javac-algs4 CompactPercolation.java
+ *  Execution:    java-algs4 CompactPercolation n trials
+ *                java-algs4 CompactPercolation -snapshot n file
+ *
+ *  Memory-compact variant of LeanPercolation for very large grids.
+ *
+ *  - open state is a long[] bitset (1 bit per site instead of a byte)
+ *  - the "connected to top/bottom" root status is two more bitsets
+ *  - the union-find is CompactUF: int parent plus a byte rank per site
+ *
+ *  Layout per site:
+ *      Percolation          1 (boolean) + 2 * (4 + 4) (two union-finds) = 17 bytes
+ *      LeanPercolation      1 (status)  + 4 + 4 (parent, size)          =  9 bytes
+ *      CompactPercolation   3/8 (bits)  + 4 + 1 (parent, rank)          ~  5.4 bytes
+ *
+ *  save() writes the whole state to a checkpoint file (see SnapshotFile),
+ *  restore() reads it back, so an experiment can be paused, or branched
+ *  from a common half-open grid. The caller can store a tag with it, e.g.
+ *  the seed of the generator that picks the next sites. The file is
+ *
+ *      MAGIC n openSites percolates tag          (4 + 4 + 4 + 4 + 8 bytes)
+ *      open[] top[] bottom[]                     (3 bitsets of n*n bits)
+ *      count parent[] rank[]                     (CompactUF)
+ *
+ *  The test client computes these figures from the array sizes of each class
+ *  (heap readings around one allocation are too noisy to compare) and
+ *  measures throughput.
+ *  With -snapshot it saves a half-open grid with its generator state as the
+ *  tag, restores it, checks the copy against the original, continues both
+ *  (the copy from the restored tag only) and reports save and restore speed.
+ *****************************************************************************/
+
+public class CompactPercolation {
+    // status bits collected while merging clusters
+    private static final int TOP = 1;
+    private static final int BOTTOM = 2;
+
+    private final int n;                // stores grid size
+    private final long[] open;          // bit i set = site i open, row-major from 0
+    private final long[] top;           // bit set on a root = its cluster touches the top row
+    private final long[] bottom;        // bit set on a root = its cluster touches the bottom row
+    private final CompactUF sites;      // one union-find over the n-by-n grid, no virtual sites
+    private int totalOpenSites;
+    private boolean percolates;
+    private long tag;                   // caller data stored with a snapshot
+
+    // creates n-by-n grid, with all sites initially blocked
+    public CompactPercolation(int n) {
+        if (n <= 0) throw new IllegalArgumentException("n must be an integer greater than 0");
+        if (n > 46340) throw new IllegalArgumentException("n must be at most 46340 (n * n must fit in an int)");
+
+        this.n = n;
+        int words = (n * n + 63) >>> 6;
+        this.open = new long[words];
+        this.top = new long[words];
+        this.bottom = new long[words];
+        this.sites = new CompactUF(n * n);
+        this.totalOpenSites = 0;
+        this.percolates = false;
+    }
+
+    // opens the site (row, col) if it is not open already
+    public void open(int row, int col) {
+        this.openFlat(this.xyTo1d(row, col), row - 1, col - 1);
+    }
+
+    // opens the site with row-major flat index site (0 to n*n - 1) if it is not open already
+    public void open(int site) {
+        if (site < 0 || site >= this.n * this.n) {
+            throw new IllegalArgumentException("index " + site + " is not between 0 and " + (this.n * this.n - 1));
+        }
+        this.openFlat(site, site / this.n, site % this.n);
+    }
+
+    // i is the validated 0-based index of (row, col), row and col also 0-based here
+    private void openFlat(int i, int row, int col) {
+        if (get(this.open, i)) return;
+        set(this.open, i);
+
+        int merged = 0;
+        if (row == 0) merged |= TOP;
+        if (row == this.n - 1) merged |= BOTTOM;
+
+        // connect to each open neighbor, collecting the status of the clusters we absorb
+        if (row > 0) merged |= this.join(i, i - this.n);
+        if (row < this.n - 1) merged |= this.join(i, i + this.n);
+        if (col > 0) merged |= this.join(i, i - 1);
+        if (col < this.n - 1) merged |= this.join(i, i + 1);
+
+        int root = this.sites.find(i);
+        if ((merged & TOP) != 0) set(this.top, root);
+        if ((merged & BOTTOM) != 0) set(this.bottom, root);
+        if (merged == (TOP | BOTTOM)) this.percolates = true;
+
+        this.totalOpenSites += 1;
+    }
+
+    // unions i with neighbor if the neighbor is open, returns the neighbor cluster's status bits
+    private int join(int i, int neighbor) {
+        if (!get(this.open, neighbor)) return 0;
+        int root = this.sites.find(neighbor);
+        int bits = (get(this.top, root) ? TOP : 0) | (get(this.bottom, root) ? BOTTOM : 0);
+        this.sites.union(i, neighbor);
+        return bits;
+    }
+
+    private static boolean get(long[] bits, int i) {
+        return (bits[i >>> 6] & (1L << i)) != 0;
+    }
+
+    private static void set(long[] bits, int i) {
+        bits[i >>> 6] |= 1L << i;
+    }
+
+    // translates 1-based (row, col) to the 0-based row-major index
+    private int xyTo1d(int row, int col) {
+        if (row <= 0 || row > n) throw new IllegalArgumentException(row + " is not a valid row index");
+        if (col <= 0 || col > n) throw new IllegalArgumentException(col + " is not a valid col index");
+        return this.n * (row - 1) + (col - 1);
+    }
+
+    // returns the number of open sites
+    public int numberOfOpenSites() {
+        return this.totalOpenSites;
+    }
+
+    // is the site (row, col) open?
+    public boolean isOpen(int row, int col) {
+        return get(this.open, this.xyTo1d(row, col));
+    }
+
+    // is the site (row, col) full? (open and its cluster touches the top row)
+    public boolean isFull(int row, int col) {
+        int i = this.xyTo1d(row, col);
+        return get(this.open, i) && get(this.top, this.sites.find(i));
+    }
+
+    // does the system percolate?
+    public boolean percolates() {
+        return this.percolates;
+    }
+
+    public static final int MAGIC = 0x31475043;     // "CPG1" read little-endian
+
+    // writes the grid to file with a caller-chosen tag, replacing the file only once complete
+    public void save(Path file, long tag) {
+        try (SnapshotFile out = SnapshotFile.create(file, snapshotBytes(this.n))) {
+            out.putInt(MAGIC);
+            out.putInt(this.n);
+            out.putInt(this.totalOpenSites);
+            out.putInt(this.percolates ? 1 : 0);
+            out.putLong(tag);
+            out.put(this.open);
+            out.put(this.top);
+            out.put(this.bottom);
+            this.sites.writeTo(out);
+            out.commit();
+        }
+        this.tag = tag;
+    }
+
+    // size of the snapshot of an n-by-n grid: header, 3 bitsets, then CompactUF
+    private static long snapshotBytes(int n) {
+        long sites = (long) n * n;
+        return 24 + 3 * 8 * ((sites + 63) >>> 6) + 4 + 5 * sites;
+    }
+
+    // the grid saved in file, see tag() for the tag saved with it
+    public static CompactPercolation restore(Path file) {
+        try (SnapshotFile in = SnapshotFile.open(file)) {
+            if (in.length() < 24 || in.getInt() != MAGIC) throw new IllegalArgumentException(file + " is not a grid snapshot");
+            // check n against the file size before allocating anything for it
+            int n = in.getInt();
+            if (n <= 0 || n > 46340) throw new IllegalArgumentException(file + ": bad grid size " + n);
+            if (in.length() != snapshotBytes(n)) {
+                throw new IllegalArgumentException(file + " is " + in.length() + " bytes, a " + n + "-by-" + n
+                                                   + " snapshot is " + snapshotBytes(n));
+            }
+            int openSites = in.getInt();
+            if (openSites < 0 || openSites > n * n) throw new IllegalArgumentException(file + ": bad open site count " + openSites);
+            CompactPercolation grid = new CompactPercolation(n);
+            grid.totalOpenSites = openSites;
+            grid.percolates = in.getInt() != 0;
+            grid.tag = in.getLong();
+            in.get(grid.open);
+            in.get(grid.top);
+            in.get(grid.bottom);
+            grid.sites.readFrom(in);
+            return grid;
+        }
+    }
+
+    // tag of the last save() or restore(), 0 for a new grid
+    public long tag() {
+        return this.tag;
+    }
+
+    // test client: measured bytes per site and throughput of the three layouts
+    public static void main(String[] args) {
+        if (args[0].equals("-snapshot")) {
+            snapshot(Integer.parseInt(args[1]), Paths.get(args[2]));
+            return;
+        }
+
+        int n = Integer.parseInt(args[0]);
+        int trials = Integer.parseInt(args[1]);
+        double total = (double) n * n;
+
+        int[] order = StdRandom.permutation(n * n);
+
+        StdOut.printf("%-20s %14s %14s%n", "class", "bytes/site", "opens/sec");
+
+        // Percolation: boolean per site and two WeightedQuickUnionUF (parent, size), with 2 virtual sites
+        long sites = (long) n * n;
+        long bytes = arrayBytes(sites + 2, 1) + 4 * arrayBytes(sites + 2, 4);
+        Percolation perc = new Percolation(n);
+        StdOut.printf("%-20s %14.3f", "Percolation", bytes / total);
+        Stopwatch timer = new Stopwatch();
+        long opened = 0;
+        for (int t = 0; t < trials; t++) {
+            if (t > 0) perc = new Percolation(n);
+            StdRandom.shuffle(order);
+            for (int k = 0; !perc.percolates(); k++) perc.open(order[k]);
+            opened += perc.numberOfOpenSites();
+        }
+        StdOut.printf(" %14.0f%n", opened / timer.elapsedTime());
+        perc = null;
+
+        // LeanPercolation (row-major): status byte, WeightedQuickUnionUF, and the row / col offsets
+        bytes = arrayBytes(sites, 1) + 2 * arrayBytes(sites, 4) + 2 * arrayBytes(n, 4);
+        LeanPercolation lean = new LeanPercolation(n);
+        StdOut.printf("%-20s %14.3f", "LeanPercolation", bytes / total);
+        timer = new Stopwatch();
+        opened = 0;
+        for (int t = 0; t < trials; t++) {
+            if (t > 0) lean = new LeanPercolation(n);
+            StdRandom.shuffle(order);
+            for (int k = 0; !lean.percolates(); k++) lean.open(order[k]);
+            opened += lean.numberOfOpenSites();
+        }
+        StdOut.printf(" %14.0f%n", opened / timer.elapsedTime());
+        lean = null;
+
+        // CompactPercolation: the three bitsets and CompactUF (parent, rank)
+        bytes = 3 * arrayBytes((sites + 63) >>> 6, 8) + arrayBytes(sites, 4) + arrayBytes(sites, 1);
+        CompactPercolation compact = new CompactPercolation(n);
+        StdOut.printf("%-20s %14.3f", "CompactPercolation", bytes / total);
+        timer = new Stopwatch();
+        opened = 0;
+        for (int t = 0; t < trials; t++) {
+            if (t > 0) compact = new CompactPercolation(n);
+            StdRandom.shuffle(order);
+            for (int k = 0; !compact.percolates(); k++) compact.open(order[k]);
+            opened += compact.numberOfOpenSites();
+        }
+        StdOut.printf(" %14.0f%n", opened / timer.elapsedTime());
+    }
+
+    /*
+     * save a half-open grid, restore it, and check the copy field by field; then continue
+     * the original with its live generator and the copy with the generator state read back
+     * from the file (the tag): they must stay identical
+     */
+    private static void snapshot(int n, Path file) {
+        int sites = n * n;
+        long state = 0;                 // draw counter, the whole state of the site generator
+        CompactPercolation grid = new CompactPercolation(n);
+        while (grid.numberOfOpenSites() < sites / 2) grid.open(nextSite(++state, sites));
+
+        double megabytes = snapshotBytes(n) / 1e6;
+        Stopwatch timer = new Stopwatch();
+        grid.save(file, state);
+        StdOut.printf("%-20s %10.1f MB/s%n", "save", megabytes / timer.elapsedTime());
+        timer = new Stopwatch();
+        CompactPercolation copy = CompactPercolation.restore(file);
+        StdOut.printf("%-20s %10.1f MB/s%n", "restore", megabytes / timer.elapsedTime());
+
+        if (copy.tag() != state) throw new IllegalStateException("restored tag " + copy.tag() + ", saved " + state);
+        compare(grid, copy, "restored grid");
+
+        long branch = copy.tag();
+        while (!grid.percolates()) grid.open(nextSite(++state, sites));
+        while (!copy.percolates()) copy.open(nextSite(++branch, sites));
+        if (branch != state) throw new IllegalStateException("restored grid needed " + branch + " draws, the original " + state);
+        compare(grid, copy, "continued grid");
+        StdOut.println("restored grid percolates after " + copy.numberOfOpenSites() + " open sites, like the original");
+    }
+
+    // site for the given draw of the test generator: a hash of the draw number
+    private static int nextSite(long draw, int sites) {
+        long z = draw;
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return (int) Math.floorMod(z ^ (z >>> 33), (long) sites);
+    }
+
+    // every observable field of the two grids must agree
+    private static void compare(CompactPercolation expected, CompactPercolation actual, String what) {
+        if (expected.n != actual.n || expected.numberOfOpenSites() != actual.numberOfOpenSites()
+                || expected.percolates() != actual.percolates()) {
+            throw new IllegalStateException(what + " differs in size, open sites or percolation");
+        }
+        for (int row = 1; row <= expected.n; row++) {
+            for (int col = 1; col <= expected.n; col++) {
+                if (expected.isOpen(row, col) != actual.isOpen(row, col) || expected.isFull(row, col) != actual.isFull(row, col)) {
+                    throw new IllegalStateException(what + " differs at (" + row + ", " + col + ")");
+                }
+            }
+        }
+    }
+
+    // heap size of an array: a 16 byte header, then the elements rounded up to 8 bytes
+    private static long arrayBytes(long length, int elementBytes) {
+        return 16 + ((length * elementBytes + 7) & ~7L);
+    }
+}
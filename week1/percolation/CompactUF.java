@@ -0,0 +1,109 @@
+/***************************************************************
+ * Refer to the notes on WeightedQuickUnionUF.java.
+ * Same idea, but trees are weighted by rank (an upper bound on
+ * their height) instead of by size.
+ *
+ * A tree of rank r has at least 2^r elements, so with fewer than
+ * 2^31 elements the rank never exceeds 30 and fits in a byte.
+ * That makes the bookkeeping 1 byte per element instead of the
+ * 4 byte int[] size array, i.e. 5 bytes per element in total.
+ *
+ * Root of i is parent[parent[parent[...parent[i]...]]]
+ *
+ * Union: the root of lower rank is linked under the root of
+ * higher rank; on a tie, the rank of the new root goes up by one.
+ ***************************************************************/
+
+public class CompactUF {
+    private static final UFMetrics METRICS = UFMetrics.register("CompactUF");
+
+    private final int[] parent;     // parent[i] = parent of i
+    private final byte[] rank;      // rank[i] = rank of subtree rooted at i (never more than 30)
+    private int count;              // number of components
+
+    /*
+     * Initializes an empty union-find data structure with
+     * n elements (0 through n-1), each in its own set.
+     */
+    public CompactUF(int n) {
+        if (n < 0) throw new IllegalArgumentException("n must not be negative");
+        count = n;
+        parent = new int[n];
+        rank = new byte[n];     // all ranks start at 0
+        for (int i = 0; i < n; i++) {
+            parent[i] = i;
+        }
+    }
+
+    // writes count, parent[] and rank[] (5n + 4 bytes), see CompactPercolation.save()
+    void writeTo(SnapshotFile out) {
+        out.putInt(count);
+        out.put(parent);
+        out.put(rank);
+    }
+
+    // reads back what writeTo() wrote, for a union-find of the same size
+    void readFrom(SnapshotFile in) {
+        count = in.getInt();
+        in.get(parent);
+        in.get(rank);
+    }
+
+    // returns the number of sets
+    public int count() {
+        return count;
+    }
+
+    // returns the canonical element (root) of the set containing p
+    public int find(int p) {
+        validate(p);
+        int links = 0;
+        while (p != parent[p]) {
+            // path halving - makes every other node in path point to its grandparent
+            parent[p] = parent[parent[p]];
+            p = parent[p];
+            links++;
+        }
+        // 5 array accesses per link followed, 1 for the final check
+        if (UFMetrics.ENABLED) METRICS.find(links, 5 * links + 1);
+        return p;
+    }
+
+    public boolean connected(int p, int q) {
+        return find(p) == find(q);
+    }
+
+    // validate that p is a valid index
+    private void validate(int p) {
+        int n = parent.length;
+        if (p < 0 || p >= n) {
+            throw new IllegalArgumentException("index " + p + " is not between 0 and " + (n - 1));
+        }
+    }
+
+    // merges the set containing p with the set containing q
+    public void union(int p, int q) {
+        int rootP = find(p);
+        int rootQ = find(q);
+        if (rootP == rootQ) {
+            if (UFMetrics.ENABLED) METRICS.union(false, 0);
+            return;
+        }
+
+        // rank comparisons, the link, and the rank update on a tie
+        int accesses;
+        if (rank[rootP] < rank[rootQ]) {
+            parent[rootP] = rootQ;
+            accesses = 3;
+        } else if (rank[rootP] > rank[rootQ]) {
+            parent[rootQ] = rootP;
+            accesses = 5;
+        } else {
+            parent[rootQ] = rootP;
+            rank[rootP]++;
+            accesses = 7;
+        }
+        count--;
+        if (UFMetrics.ENABLED) METRICS.union(true, accesses);
+    }
+}
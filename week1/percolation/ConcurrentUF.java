@@ -0,0 +1,266 @@
+import edu.princeton.cs.algs4.StdOut;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/***************************************************************
+ * Refer to the notes on WeightedQuickUnionUF.java.
+ * This is a lock-free version that several threads can share,
+ * e.g. workers opening different regions of one huge grid.
+ * (After Jayanti and Tarjan, "A Randomized Concurrent Algorithm
+ * for Disjoint Set Union".)
+ *
+ * parent[] is an AtomicIntegerArray and every write is a CAS:
+ *
+ * Find: path halving, each halving step is a CAS that only
+ * succeeds if the node still has the parent we read. A failed
+ * CAS is harmless, someone else already shortened the path.
+ *
+ * Union: find both roots and CAS the root of lower priority
+ * from "points to itself" to "points to the other root". If the
+ * CAS fails the root was linked by another thread meanwhile, so
+ * we simply retry from the top.
+ *
+ * Weighting by size or rank would need two words updated at
+ * once, so instead each element gets a fixed pseudo-random
+ * priority and the lower priority root is always linked below
+ * the higher one ("randomized linking"). That keeps the expected
+ * tree height logarithmic, just like weighting does.
+ *
+ * Count: the link CAS and the decrement of the component count
+ * are two steps, so the count shares one AtomicLong with the
+ * number of links in flight: a union announces itself (+1 in
+ * flight) before its link CAS and retires (-1 in flight, and
+ * -1 component if the CAS succeeded) right after it. count()
+ * returns the count only from a state with nothing in flight,
+ * where it equals n minus every link made so far. So count() is
+ * linearizable, with each union taking effect at its link CAS.
+ * find, connected and union stay lock-free; count() may spin
+ * while unions are in flight, and under a nonstop stream of
+ * unions from many threads it can wait a while.
+ ***************************************************************/
+
+public class ConcurrentUF {
+    private static final UFMetrics METRICS = UFMetrics.register("ConcurrentUF");
+
+    private final AtomicIntegerArray parent;    // parent[i] = parent of i
+    // (components << 32) | unions between their announcement and their link CAS
+    private final AtomicLong state;
+    private static final long COMPONENT = 1L << 32;
+    private final int salt;                     // mixes the priorities of this instance
+
+    // n elements (0 through n-1), each in its own set
+    public ConcurrentUF(int n) {
+        if (n < 0) throw new IllegalArgumentException("n must not be negative");
+        parent = new AtomicIntegerArray(n);
+        for (int i = 0; i < n; i++) parent.set(i, i);
+        state = new AtomicLong(n * COMPONENT);
+        salt = (int) System.nanoTime();
+    }
+
+    // returns the number of sets, read at a moment with no link in flight
+    public int count() {
+        while (true) {
+            long s = state.get();
+            if ((int) s == 0) return (int) (s >>> 32);
+            Thread.onSpinWait();
+        }
+    }
+
+    // returns the canonical element (root) of the set containing p
+    public int find(int p) {
+        validate(p);
+        int steps = 0;
+        while (true) {
+            int up = parent.get(p);
+            int grandparent = parent.get(up);
+            if (up == grandparent) {
+                // each step skips 2 links with 2 reads and a CAS, the last one may cover 1 link
+                if (UFMetrics.ENABLED) METRICS.find(2 * steps + (up == p ? 0 : 1), 3 * steps + 2);
+                return up;
+            }
+            // path halving, fails harmlessly if p was re-linked meanwhile
+            parent.compareAndSet(p, up, grandparent);
+            p = grandparent;
+            steps++;
+        }
+    }
+
+    /*
+     * Roots can change under us, so equal roots mean connected, but
+     * different roots only mean "not connected" if the first one is
+     * still a root afterwards (otherwise it was just linked somewhere).
+     */
+    public boolean connected(int p, int q) {
+        while (true) {
+            int rootP = find(p);
+            int rootQ = find(q);
+            if (rootP == rootQ) return true;
+            if (parent.get(rootP) == rootP) return false;
+        }
+    }
+
+    // validate that p is a valid index
+    private void validate(int p) {
+        int n = parent.length();
+        if (p < 0 || p >= n) {
+            throw new IllegalArgumentException("index " + p + " is not between 0 and " + (n - 1));
+        }
+    }
+
+    // merges the set containing p with the set containing q
+    public void union(int p, int q) {
+        while (true) {
+            int rootP = find(p);
+            int rootQ = find(q);
+            if (rootP == rootQ) {
+                if (UFMetrics.ENABLED) METRICS.union(false, 0);
+                return;
+            }
+
+            // link the lower priority root below the higher priority one,
+            // announced in state so that count() never sees the link without its decrement
+            state.incrementAndGet();
+            boolean linked = lessThan(rootP, rootQ)
+                    ? parent.compareAndSet(rootP, rootP, rootQ)
+                    : parent.compareAndSet(rootQ, rootQ, rootP);
+            state.addAndGet(linked ? -COMPONENT - 1 : -1);
+            if (linked) {
+                if (UFMetrics.ENABLED) METRICS.union(true, 1);
+                return;
+            }
+            // a lost link CAS, retried from the top
+            if (UFMetrics.ENABLED) METRICS.access(1);
+        }
+    }
+
+    // fixed pseudo-random total order on the elements
+    private boolean lessThan(int p, int q) {
+        int priorityP = priority(p);
+        int priorityQ = priority(q);
+        return priorityP < priorityQ || (priorityP == priorityQ && p < q);
+    }
+
+    // bijective integer mix (murmur3 finalizer), so priorities look random but never change
+    private int priority(int p) {
+        int h = p ^ salt;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    /**
+     * Test client.
+     * <p>
+     * java-algs4 ConcurrentUF stress n pairs threads
+     * runs random unions and connected() checks from many threads at once,
+     * with count() checked from a thread of its own, and compares the final
+     * partition against WeightedQuickUnionUF.
+     * <p>
+     * java-algs4 ConcurrentUF bench n pairs maxThreads
+     * prints union throughput for 1, 2, 4, ... maxThreads threads.
+     *
+     * @param args the command-line arguments
+     */
+    public static void main(String[] args) throws Exception {
+        String mode = args[0];
+        int n = Integer.parseInt(args[1]);
+        int pairs = Integer.parseInt(args[2]);
+        int threads = Integer.parseInt(args[3]);
+
+        int[] ps = new int[pairs];
+        int[] qs = new int[pairs];
+        SplittableRandom rng = new SplittableRandom(42);
+        for (int i = 0; i < pairs; i++) {
+            ps[i] = rng.nextInt(n);
+            qs[i] = rng.nextInt(n);
+        }
+
+        if (mode.equals("stress")) stress(n, ps, qs, threads);
+        else if (mode.equals("bench")) bench(n, ps, qs, threads);
+        else throw new IllegalArgumentException("unknown mode " + mode);
+    }
+
+    // every thread applies ALL pairs in a different order, with connected() checks mixed in
+    private static void stress(int n, int[] ps, int[] qs, int threads) throws Exception {
+        ConcurrentUF uf = new ConcurrentUF(n);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        Future<?>[] done = new Future<?>[threads];
+        for (int t = 0; t < threads; t++) {
+            int offset = (int) ((long) ps.length * t / threads);
+            done[t] = pool.submit(() -> {
+                for (int k = 0; k < ps.length; k++) {
+                    int i = (k + offset) % ps.length;
+                    uf.union(ps[i], qs[i]);
+                    // once united, a pair must stay connected
+                    if (!uf.connected(ps[i], qs[i])) throw new IllegalStateException("lost union " + i);
+                }
+            });
+        }
+
+        // seen from outside, the count only ever goes down
+        AtomicBoolean finished = new AtomicBoolean();
+        ExecutorService watch = Executors.newSingleThreadExecutor();
+        Future<?> observer = watch.submit(() -> {
+            int last = uf.count();
+            while (!finished.get()) {
+                int now = uf.count();
+                if (now > last) throw new IllegalStateException("count went up from " + last + " to " + now);
+                last = now;
+            }
+        });
+
+        for (Future<?> f : done) f.get();
+        pool.shutdown();
+        finished.set(true);
+        observer.get();
+        watch.shutdown();
+
+        WeightedQuickUnionUF expected = new WeightedQuickUnionUF(n);
+        for (int i = 0; i < ps.length; i++) expected.union(ps[i], qs[i]);
+
+        if (uf.count() != expected.count()) {
+            throw new IllegalStateException("count " + uf.count() + " != " + expected.count());
+        }
+        // same partition: roots map one-to-one
+        int[] rootMap = new int[n];
+        Arrays.fill(rootMap, -1);
+        for (int i = 0; i < n; i++) {
+            int r = expected.find(i);
+            if (rootMap[r] == -1) rootMap[r] = uf.find(i);
+            else if (rootMap[r] != uf.find(i)) throw new IllegalStateException("partition differs at " + i);
+        }
+        StdOut.println("ok, " + uf.count() + " components");
+    }
+
+    // threads split the pairs between them
+    private static void bench(int n, int[] ps, int[] qs, int maxThreads) throws Exception {
+        StdOut.printf("%8s %16s%n", "threads", "unions/sec");
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            ConcurrentUF uf = new ConcurrentUF(n);
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            Future<?>[] done = new Future<?>[threads];
+            long start = System.nanoTime();
+            for (int t = 0; t < threads; t++) {
+                int from = (int) ((long) ps.length * t / threads);
+                int to = (int) ((long) ps.length * (t + 1) / threads);
+                done[t] = pool.submit(() -> {
+                    for (int i = from; i < to; i++) uf.union(ps[i], qs[i]);
+                });
+            }
+            for (Future<?> f : done) f.get();
+            double seconds = (System.nanoTime() - start) / 1e9;
+            pool.shutdown();
+            StdOut.printf("%8d %16.0f%n", threads, ps.length / seconds);
+        }
+    }
+}
@@ -0,0 +1,223 @@
+import edu.princeton.cs.algs4.StdOut;
+import edu.princeton.cs.algs4.StdRandom;
+import edu.princeton.cs.algs4.Stopwatch;
+
+import java.util.Arrays;
+
+/******************************************************************************
+ *  Compilation:  javac-algs4 FloodFillPercolation.java
+ *  Execution:    java-algs4 FloodFillPercolation n
+ *
+ *  Percolation with O(1) isFull() queries, for clients that read the full
+ *  state of the whole grid after every step (e.g. to redraw it).
+ *
+ *  Percolation.isFull() costs two union-find finds, so redrawing an n-by-n
+ *  grid costs n^2 finds per frame. Here the set of full sites is kept as
+ *  an explicit bitmap instead, updated as sites open:
+ *
+ *  - a newly opened site becomes full if it is in the top row or next to
+ *    a full site
+ *  - when it does, a flood fill (depth-first, explicit stack) marks every
+ *    open site reachable from it that wasn't full yet
+ *
+ *  A site turns full at most once, so all the flood fills of a run cost
+ *  O(n^2) in total; no union-find is needed at all. isFull() is a single
+ *  bit read and fullSnapshot() is a bulk copy of the bitmap.
+ *
+ *  The test client checks isFull() against Percolation on the same open
+ *  sequence, then times full-grid isFull() sweeps against Percolation.
+ *****************************************************************************/
+
+public class FloodFillPercolation {
+    private final int n;                // stores grid size
+    private final long[] open;          // bit i set = site i open, row-major from 0
+    private final long[] full;          // bit i set = site i full
+    private int[] stack;                // pending sites of the current flood fill
+    private int totalOpenSites;
+    private boolean percolates;         // set when the first bottom-row site becomes full
+
+    // creates n-by-n grid, with all sites initially blocked
+    public FloodFillPercolation(int n) {
+        if (n <= 0) throw new IllegalArgumentException("n must be an integer greater than 0");
+        if (n > 46340) throw new IllegalArgumentException("n must be at most 46340 (n * n must fit in an int)");
+
+        this.n = n;
+        int words = (n * n + 63) >>> 6;
+        this.open = new long[words];
+        this.full = new long[words];
+        this.stack = new int[64];
+        this.totalOpenSites = 0;
+        this.percolates = false;
+    }
+
+    // opens the site (row, col) if it is not open already
+    public void open(int row, int col) {
+        this.openFlat(this.xyTo1d(row, col));
+    }
+
+    // opens the site with row-major flat index site (0 to n*n - 1) if it is not open already
+    public void open(int site) {
+        if (site < 0 || site >= this.n * this.n) {
+            throw new IllegalArgumentException("index " + site + " is not between 0 and " + (this.n * this.n - 1));
+        }
+        this.openFlat(site);
+    }
+
+    private void openFlat(int i) {
+        if (get(this.open, i)) return;
+        set(this.open, i);
+        this.totalOpenSites += 1;
+
+        int row = i / this.n;
+        int col = i % this.n;
+        boolean fills = row == 0
+                || (row > 0 && get(this.full, i - this.n))
+                || (row < this.n - 1 && get(this.full, i + this.n))
+                || (col > 0 && get(this.full, i - 1))
+                || (col < this.n - 1 && get(this.full, i + 1));
+        if (fills) this.flood(i);
+    }
+
+    // marks i and every open, not yet full site reachable from it as full
+    private void flood(int start) {
+        int size = 0;
+        set(this.full, start);
+        this.stack[size++] = start;
+
+        while (size > 0) {
+            int i = this.stack[--size];
+            int row = i / this.n;
+            int col = i % this.n;
+            if (row == this.n - 1) this.percolates = true;
+
+            // room for up to 4 pushes
+            if (size + 4 > this.stack.length) this.stack = Arrays.copyOf(this.stack, 2 * this.stack.length);
+            if (row > 0 && this.fillable(i - this.n)) this.stack[size++] = i - this.n;
+            if (row < this.n - 1 && this.fillable(i + this.n)) this.stack[size++] = i + this.n;
+            if (col > 0 && this.fillable(i - 1)) this.stack[size++] = i - 1;
+            if (col < this.n - 1 && this.fillable(i + 1)) this.stack[size++] = i + 1;
+        }
+    }
+
+    // if site j is open but not full yet, marks it full and returns true
+    private boolean fillable(int j) {
+        if (!get(this.open, j) || get(this.full, j)) return false;
+        set(this.full, j);
+        return true;
+    }
+
+    private static boolean get(long[] bits, int i) {
+        return (bits[i >>> 6] & (1L << i)) != 0;
+    }
+
+    private static void set(long[] bits, int i) {
+        bits[i >>> 6] |= 1L << i;
+    }
+
+    // translates 1-based (row, col) to the 0-based row-major index
+    private int xyTo1d(int row, int col) {
+        if (row <= 0 || row > n) throw new IllegalArgumentException(row + " is not a valid row index");
+        if (col <= 0 || col > n) throw new IllegalArgumentException(col + " is not a valid col index");
+        return this.n * (row - 1) + (col - 1);
+    }
+
+    // returns the number of open sites
+    public int numberOfOpenSites() {
+        return this.totalOpenSites;
+    }
+
+    // is the site (row, col) open?
+    public boolean isOpen(int row, int col) {
+        return get(this.open, this.xyTo1d(row, col));
+    }
+
+    // is the site (row, col) full?
+    public boolean isFull(int row, int col) {
+        return get(this.full, this.xyTo1d(row, col));
+    }
+
+    // does the system percolate?
+    public boolean percolates() {
+        return this.percolates;
+    }
+
+    /*
+     * copy of the full-site bitmap: bit (i % 64) of word i / 64 is set
+     * if the site with row-major index i (0 to n*n - 1) is full
+     */
+    public long[] fullSnapshot() {
+        return this.full.clone();
+    }
+
+    // test client: checks isFull() against Percolation on the same opens, then times full-grid reads per frame
+    public static void main(String[] args) {
+        int n = Integer.parseInt(args[0]);
+        int[] order = StdRandom.permutation(n * n);
+        int frames = 20;
+
+        // same open sequence on both, compared at every step and on the whole grid 8 times along the way
+        Percolation perc = new Percolation(n);
+        FloodFillPercolation flood = new FloodFillPercolation(n);
+        int every = Math.max(1, n * n / 8);
+        for (int k = 0; !perc.percolates(); k++) {
+            int row = order[k] / n + 1;
+            int col = order[k] % n + 1;
+            perc.open(order[k]);
+            flood.open(order[k]);
+            if (perc.isFull(row, col) != flood.isFull(row, col) || perc.percolates() != flood.percolates()) {
+                throw new IllegalStateException("differs from Percolation after opening (" + row + ", " + col + ")");
+            }
+            if (k % every == 0) countFull(perc, flood, n);
+        }
+
+        int full = countFull(perc, flood, n);
+        int fromSnapshot = 0;
+        for (long word : flood.fullSnapshot()) fromSnapshot += Long.bitCount(word);
+        if (fromSnapshot != full) throw new IllegalStateException("fullSnapshot has " + fromSnapshot + " full sites, not " + full);
+        StdOut.printf("%d full sites, same as Percolation%n", full);
+
+        // each timed loop must find the same count again, which also keeps it from being optimized away
+        Stopwatch timer = new Stopwatch();
+        for (int f = 0; f < frames; f++) {
+            int count = 0;
+            for (int row = 1; row <= n; row++) {
+                for (int col = 1; col <= n; col++) if (perc.isFull(row, col)) count++;
+            }
+            if (count != full) throw new IllegalStateException("Percolation counted " + count);
+        }
+        StdOut.printf("%-28s %10.3f ms/frame%n", "Percolation.isFull", 1000 * timer.elapsedTime() / frames);
+
+        timer = new Stopwatch();
+        for (int f = 0; f < frames; f++) {
+            int count = 0;
+            for (int row = 1; row <= n; row++) {
+                for (int col = 1; col <= n; col++) if (flood.isFull(row, col)) count++;
+            }
+            if (count != full) throw new IllegalStateException("FloodFillPercolation counted " + count);
+        }
+        StdOut.printf("%-28s %10.3f ms/frame%n", "FloodFillPercolation.isFull", 1000 * timer.elapsedTime() / frames);
+
+        timer = new Stopwatch();
+        for (int f = 0; f < frames; f++) {
+            int count = 0;
+            for (long word : flood.fullSnapshot()) count += Long.bitCount(word);
+            if (count != full) throw new IllegalStateException("fullSnapshot counted " + count);
+        }
+        StdOut.printf("%-28s %10.3f ms/frame%n", "fullSnapshot", 1000 * timer.elapsedTime() / frames);
+    }
+
+    // compares isFull() on every site, returns the number of full sites
+    private static int countFull(Percolation perc, FloodFillPercolation flood, int n) {
+        int full = 0;
+        for (int row = 1; row <= n; row++) {
+            for (int col = 1; col <= n; col++) {
+                boolean expected = perc.isFull(row, col);
+                if (flood.isFull(row, col) != expected) {
+                    throw new IllegalStateException("differs from Percolation at (" + row + ", " + col + ")");
+                }
+                if (expected) full++;
+            }
+        }
+        return full;
+    }
+}
@@ -0,0 +1,273 @@
+import edu.princeton.cs.algs4.StdOut;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+
+/******************************************************************************
+ *  Compilation:  javac-algs4 HoshenKopelman.java
+ *  Execution:    java-algs4 HoshenKopelman check n file
+ *                java-algs4 HoshenKopelman generate n rows p seed file
+ *
+ *  Streaming percolation check for occupancy grids that don't fit in memory.
+ *
+ *  The grid is read one row at a time, from a bit-packed file:
+ *  each row is (n + 7) / 8 bytes, bit (col % 8) of byte (col / 8) set
+ *  means the site is open, rows follow each other top to bottom until EOF.
+ *
+ *  Clusters are labelled with the Hoshen-Kopelman two-row sweep: only the
+ *  labels of the previous row are kept, each site takes the label of its
+ *  open left or upper neighbor, and when both exist their labels are
+ *  merged in a small union-find over labels. After each row the labels
+ *  still in use are renumbered 0, 1, 2, ..., so the union-find never has
+ *  more than 2n entries. A label of the previous row that no site of the
+ *  current row refers to belongs to a cluster that is finished; its size
+ *  goes into the statistics.
+ *
+ *  Time is O(n) per row, plus O(1) per finished cluster for the size
+ *  histogram: sizes up to n are counted in an array indexed by size,
+ *  larger ones in a hash map, and clusterSizeCounts() sorts them once.
+ *  Memory is O(n) plus one entry per distinct cluster size above n (there
+ *  are fewer such clusters than open sites / n), whatever the number of rows.
+ *
+ *  % java-algs4 HoshenKopelman generate 1000 1000 0.6 1 grid.bin
+ *  % java-algs4 HoshenKopelman check 1000 grid.bin
+ *****************************************************************************/
+
+public class HoshenKopelman {
+    private final int n;                // sites per row
+    private long rows;                  // rows read
+    private long openSites;
+    private long clusters;              // number of finished clusters
+    private long largestCluster;
+    private boolean percolates;
+    private final long[] smallSizeCounts;                                   // [size] = number of clusters, size <= n
+    private final Map<Long, Long> largeSizeCounts = new HashMap<>();        // cluster size -> number of clusters, size > n
+
+    // labels of the previous row, renumbered 0 to labels - 1
+    private int[] previous;             // previous[col] = label of the site, -1 if blocked
+    private int labels;
+    private long[] labelSize;           // labelSize[label] = sites in that cluster so far
+    private boolean[] labelTop;         // labelTop[label] = cluster touches the top row
+
+    // union-find over the labels of the previous row (0 to labels - 1)
+    // and provisional labels for the current row (labels + col)
+    private final int[] parent;
+    private final long[] size;
+    private final boolean[] top;
+    private final int[] renumber;
+
+    private int[] current;              // labels of the row being read (provisional, then renumbered)
+    private final byte[] row;
+
+    // reads the whole grid from the channel, one row at a time
+    public HoshenKopelman(ReadableByteChannel in, int n) {
+        if (n <= 0) throw new IllegalArgumentException("n must be an integer greater than 0");
+
+        this.n = n;
+        this.previous = new int[n];
+        this.current = new int[n];
+        Arrays.fill(this.previous, -1);     // nothing above the top row
+        this.labelSize = new long[n];
+        this.labelTop = new boolean[n];
+        this.parent = new int[2 * n];
+        this.size = new long[2 * n];
+        this.top = new boolean[2 * n];
+        this.renumber = new int[2 * n];
+        this.row = new byte[(n + 7) / 8];
+        this.smallSizeCounts = new long[n + 1];
+
+        ByteBuffer buffer = ByteBuffer.wrap(this.row);
+        try {
+            while (readRow(in, buffer)) {
+                this.sweep();
+                this.rows++;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        // every cluster still labelled is finished, and touches the bottom row
+        for (int label = 0; label < this.labels; label++) {
+            this.finish(this.labelSize[label]);
+            if (this.labelTop[label]) this.percolates = true;
+        }
+    }
+
+    // fills the buffer with the next row, false at a clean EOF
+    private static boolean readRow(ReadableByteChannel in, ByteBuffer buffer) throws IOException {
+        buffer.clear();
+        while (buffer.hasRemaining()) {
+            if (in.read(buffer) < 0) {
+                if (buffer.position() == 0) return false;
+                throw new IOException("truncated row: " + buffer.position() + " of " + buffer.capacity() + " bytes");
+            }
+        }
+        return true;
+    }
+
+    // labels the row in this.row against the labels of the previous row
+    private void sweep() {
+        // previous labels start out as their own roots, with their sizes so far
+        int used = this.labels + this.n;
+        for (int i = 0; i < used; i++) {
+            this.parent[i] = i;
+            this.size[i] = i < this.labels ? this.labelSize[i] : 0;
+            this.top[i] = i < this.labels ? this.labelTop[i] : this.rows == 0;
+            this.renumber[i] = -1;
+        }
+
+        for (int col = 0; col < this.n; col++) {
+            if ((this.row[col >>> 3] & (1 << (col & 7))) == 0) {
+                this.current[col] = -1;
+                continue;
+            }
+            this.openSites++;
+
+            int label = this.labels + col;
+            this.size[label] = 1;
+            if (col > 0 && this.current[col - 1] >= 0) label = this.union(label, this.current[col - 1]);
+            if (this.previous[col] >= 0) label = this.union(label, this.previous[col]);
+            this.current[col] = label;
+        }
+
+        // renumber the roots the current row still refers to
+        int next = 0;
+        for (int col = 0; col < this.n; col++) {
+            if (this.current[col] < 0) continue;
+            int root = this.find(this.current[col]);
+            if (this.renumber[root] < 0) {
+                this.renumber[root] = next;
+                this.labelSize[next] = this.size[root];
+                this.labelTop[next] = this.top[root];
+                next++;
+            }
+            this.current[col] = this.renumber[root];
+        }
+
+        // previous clusters that were not continued are complete
+        for (int label = 0; label < this.labels; label++) {
+            if (this.parent[label] == label && this.renumber[label] < 0) this.finish(this.size[label]);
+        }
+
+        int[] swap = this.previous;
+        this.previous = this.current;
+        this.current = swap;
+        this.labels = next;
+    }
+
+    // merges two label trees (by size), returns the new root
+    private int union(int p, int q) {
+        int rootP = this.find(p);
+        int rootQ = this.find(q);
+        if (rootP == rootQ) return rootP;
+        if (this.size[rootP] < this.size[rootQ]) {
+            int swap = rootP;
+            rootP = rootQ;
+            rootQ = swap;
+        }
+        this.parent[rootQ] = rootP;
+        this.size[rootP] += this.size[rootQ];
+        this.top[rootP] |= this.top[rootQ];
+        return rootP;
+    }
+
+    private int find(int p) {
+        while (p != this.parent[p]) {
+            this.parent[p] = this.parent[this.parent[p]];
+            p = this.parent[p];
+        }
+        return p;
+    }
+
+    private void finish(long clusterSize) {
+        this.clusters++;
+        this.largestCluster = Math.max(this.largestCluster, clusterSize);
+        if (clusterSize <= this.n) this.smallSizeCounts[(int) clusterSize]++;
+        else this.largeSizeCounts.merge(clusterSize, 1L, Long::sum);
+    }
+
+    // does some cluster connect the top row to the bottom row?
+    public boolean percolates() {
+        return this.percolates;
+    }
+
+    // number of rows read
+    public long rows() {
+        return this.rows;
+    }
+
+    // number of open sites in the whole grid
+    public long numberOfOpenSites() {
+        return this.openSites;
+    }
+
+    // number of clusters (connected groups of open sites)
+    public long clusterCount() {
+        return this.clusters;
+    }
+
+    // number of sites in the largest cluster
+    public long largestClusterSize() {
+        return this.largestCluster;
+    }
+
+    // cluster size -> number of clusters of that size, in increasing size
+    public SortedMap<Long, Long> clusterSizeCounts() {
+        TreeMap<Long, Long> counts = new TreeMap<>(this.largeSizeCounts);
+        for (int size = 1; size <= this.n; size++) {
+            if (this.smallSizeCounts[size] > 0) counts.put((long) size, this.smallSizeCounts[size]);
+        }
+        return Collections.unmodifiableSortedMap(counts);
+    }
+
+    // test client
+    public static void main(String[] args) throws IOException {
+        String mode = args[0];
+        int n = Integer.parseInt(args[1]);
+
+        if (mode.equals("generate")) {
+            long rows = Long.parseLong(args[2]);
+            double p = Double.parseDouble(args[3]);
+            SplittableRandom rng = new SplittableRandom(Long.parseLong(args[4]));
+            Path file = Paths.get(args[5]);
+            try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.allocate((n + 7) / 8);
+                for (long r = 0; r < rows; r++) {
+                    buffer.clear();
+                    for (int b = 0; b < buffer.capacity(); b++) {
+                        int bits = 0;
+                        for (int i = 0; i < 8; i++) if (rng.nextDouble() < p) bits |= 1 << i;
+                        buffer.put((byte) bits);
+                    }
+                    buffer.flip();
+                    while (buffer.hasRemaining()) out.write(buffer);
+                }
+            }
+            return;
+        }
+
+        if (!mode.equals("check")) throw new IllegalArgumentException("unknown mode " + mode);
+        try (FileChannel in = FileChannel.open(Paths.get(args[2]), StandardOpenOption.READ)) {
+            HoshenKopelman hk = new HoshenKopelman(in, n);
+            StdOut.printf("%-20s= %d x %d%n", "grid", hk.rows(), n);
+            StdOut.printf("%-20s= %d%n", "open sites", hk.numberOfOpenSites());
+            StdOut.printf("%-20s= %d%n", "clusters", hk.clusterCount());
+            StdOut.printf("%-20s= %d%n", "largest cluster", hk.largestClusterSize());
+            StdOut.printf("%-20s= %b%n", "percolates", hk.percolates());
+        }
+    }
+}
@@ -0,0 +1,206 @@
+import edu.princeton.cs.algs4.StdOut;
+import edu.princeton.cs.algs4.Stopwatch;
+
+import java.io.Closeable;
+import java.util.SplittableRandom;
+
+/******************************************************************************
+ *  Compilation:  javac-algs4 LargePercolation.java
+ *  Execution:    java-algs4 LargePercolation n [seed]
+ *
+ *  Percolation for grids with more than 2^31 sites.
+ *
+ *  Percolation computes n * n in int arithmetic, which silently overflows
+ *  once n > 46340, and on-heap arrays are capped at 2^31 elements anyway.
+ *  This variant uses long site indices throughout and keeps its state in
+ *  memory-mapped files (see MappedArray), off the Java heap:
+ *
+ *      parent   8 bytes per site  (long parent index, union by rank)
+ *      status   1 byte per site   (OPEN, TOP, BOTTOM bits + 5 bit rank)
+ *
+ *  Like LeanPercolation there are no virtual sites and no second
+ *  union-find: roots carry "connected to top/bottom" bits, so isFull()
+ *  has no backwash. A tree of rank r holds at least 2^r sites, so the
+ *  5 bit rank only saturates (at 31) for trees of over 2 billion sites;
+ *  past that point linking is still correct, just no longer rank-balanced.
+ *
+ *  Call close() to delete the backing files.
+ *
+ *  The test client opens random sites until the grid percolates. It draws
+ *  sites with replacement, since a permutation of billions of sites would
+ *  itself need more memory than the grid.
+ *****************************************************************************/
+
+public class LargePercolation implements Closeable {
+    private static final int OPEN = 0x20;
+    private static final int TOP = 0x40;
+    private static final int BOTTOM = 0x80;
+    private static final int RANK = 0x1f;           // low 5 bits hold the rank of a root
+
+    private final long n;                           // stores grid size
+    private final MappedArray parent;               // parent of each site, 8 bytes each
+    private final MappedArray status;               // status bits and rank, 1 byte each
+    private long totalOpenSites;
+    private boolean percolates;
+
+    // creates n-by-n grid, with all sites initially blocked
+    public LargePercolation(long n) {
+        if (n <= 0) throw new IllegalArgumentException("n must be an integer greater than 0");
+        long total;
+        long parentBytes;
+        try {
+            // every offset p * Long.BYTES into parent must fit in a long, not just n * n
+            total = Math.multiplyExact(n, n);
+            parentBytes = Math.multiplyExact(total, (long) Long.BYTES);
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("n = " + n + " is too large: n * n * " + Long.BYTES + " must fit in a long");
+        }
+
+        this.n = n;
+        // parent is 0 in a fresh file, so it is stored as (parent index + 1) and 0 means "self"
+        this.parent = new MappedArray(parentBytes);
+        this.status = new MappedArray(total);
+        this.totalOpenSites = 0;
+        this.percolates = false;
+    }
+
+    // opens the site (row, col) if it is not open already
+    public void open(long row, long col) {
+        this.openFlat(this.xyTo1d(row, col), row - 1, col - 1);
+    }
+
+    // opens the site with row-major flat index site (0 to n*n - 1) if it is not open already
+    public void open(long site) {
+        if (site < 0 || site >= this.n * this.n) {
+            throw new IllegalArgumentException("index " + site + " is not between 0 and " + (this.n * this.n - 1));
+        }
+        this.openFlat(site, site / this.n, site % this.n);
+    }
+
+    // i is the validated 0-based index of (row, col), row and col also 0-based here
+    private void openFlat(long i, long row, long col) {
+        if ((this.status(i) & OPEN) != 0) return;
+
+        int merged = OPEN;
+        if (row == 0) merged |= TOP;
+        if (row == this.n - 1) merged |= BOTTOM;
+        this.status.putByte(i, (byte) merged);
+
+        // connect to each open neighbor, collecting the status of the clusters we absorb
+        if (row > 0) merged |= this.join(i, i - this.n);
+        if (row < this.n - 1) merged |= this.join(i, i + this.n);
+        if (col > 0) merged |= this.join(i, i - 1);
+        if (col < this.n - 1) merged |= this.join(i, i + 1);
+
+        long root = this.find(i);
+        int rootStatus = this.status(root) | merged;
+        this.status.putByte(root, (byte) rootStatus);
+        if ((rootStatus & (TOP | BOTTOM)) == (TOP | BOTTOM)) this.percolates = true;
+
+        this.totalOpenSites += 1;
+    }
+
+    // unions i with neighbor if the neighbor is open, returns the neighbor cluster's status bits
+    private int join(long i, long neighbor) {
+        if ((this.status(neighbor) & OPEN) == 0) return 0;
+        long rootI = this.find(i);
+        long rootN = this.find(neighbor);
+        int bits = this.status(rootN) & (TOP | BOTTOM);
+        if (rootI == rootN) return bits;
+
+        // union by rank, keeping the flag bits of each root intact
+        int statusI = this.status(rootI);
+        int statusN = this.status(rootN);
+        int rankI = statusI & RANK;
+        int rankN = statusN & RANK;
+        if (rankI < rankN) {
+            this.setParent(rootI, rootN);
+            this.status.putByte(rootN, (byte) (statusN | (statusI & (TOP | BOTTOM))));
+        } else {
+            this.setParent(rootN, rootI);
+            int rank = rankI == rankN && rankI < RANK ? rankI + 1 : rankI;
+            this.status.putByte(rootI, (byte) ((statusI & ~RANK) | (statusN & (TOP | BOTTOM)) | rank));
+        }
+        return bits;
+    }
+
+    // root of p, with path halving
+    private long find(long p) {
+        long next = this.parent(p);
+        while (next != p) {
+            long grandparent = this.parent(next);
+            this.setParent(p, grandparent);
+            p = grandparent;
+            next = this.parent(p);
+        }
+        return p;
+    }
+
+    private long parent(long p) {
+        long stored = this.parent.getLong(p * Long.BYTES);
+        return stored == 0 ? p : stored - 1;
+    }
+
+    private void setParent(long p, long q) {
+        this.parent.putLong(p * Long.BYTES, q + 1);
+    }
+
+    private int status(long p) {
+        return this.status.getByte(p) & 0xff;
+    }
+
+    // translates 1-based (row, col) to the 0-based row-major index
+    private long xyTo1d(long row, long col) {
+        if (row <= 0 || row > n) throw new IllegalArgumentException(row + " is not a valid row index");
+        if (col <= 0 || col > n) throw new IllegalArgumentException(col + " is not a valid col index");
+        return this.n * (row - 1) + (col - 1);
+    }
+
+    // returns the number of open sites
+    public long numberOfOpenSites() {
+        return this.totalOpenSites;
+    }
+
+    // is the site (row, col) open?
+    public boolean isOpen(long row, long col) {
+        return (this.status(this.xyTo1d(row, col)) & OPEN) != 0;
+    }
+
+    // is the site (row, col) full? (open and its cluster touches the top row)
+    public boolean isFull(long row, long col) {
+        long i = this.xyTo1d(row, col);
+        if ((this.status(i) & OPEN) == 0) return false;
+        return (this.status(this.find(i)) & TOP) != 0;
+    }
+
+    // does the system percolate?
+    public boolean percolates() {
+        return this.percolates;
+    }
+
+    // deletes the backing files
+    @Override
+    public void close() {
+        this.parent.close();
+        this.status.close();
+    }
+
+    // test client
+    public static void main(String[] args) {
+        long n = Long.parseLong(args[0]);
+        SplittableRandom rng = new SplittableRandom(args.length > 1 ? Long.parseLong(args[1]) : System.nanoTime());
+
+        try (LargePercolation perc = new LargePercolation(n)) {
+            Stopwatch timer = new Stopwatch();
+            while (!perc.percolates()) {
+                perc.open(rng.nextLong(n * n));
+            }
+            double elapsed = timer.elapsedTime();
+
+            StdOut.printf("%-20s= %d%n", "sites", n * n);
+            StdOut.printf("%-20s= %d%n", "open sites", perc.numberOfOpenSites());
+            StdOut.printf("%-20s= %f%n", "threshold", (double) perc.numberOfOpenSites() / ((double) n * n));
+            StdOut.printf("%-20s= %.1f s%n", "elapsed", elapsed);
+        }
+    }
+}
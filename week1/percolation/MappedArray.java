@@ -0,0 +1,87 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/******************************************************************************
+ *  Off-heap array backed by a memory-mapped file, indexed by long.
+ *
+ *  A single MappedByteBuffer is limited to 2 GB, so the file is mapped as
+ *  a sequence of fixed-size chunks (a power of two, so locating an element
+ *  is a shift and a mask). The contents live in the OS page cache instead
+ *  of the Java heap, which keeps billions of elements out of the GC's way.
+ *
+ *  The backing file is a temporary file that is deleted again on close()
+ *  (or at JVM exit at the latest).
+ *****************************************************************************/
+
+public class MappedArray implements Closeable {
+    private static final int CHUNK_SHIFT = 30;                  // 1 GB per mapped chunk
+    private static final long CHUNK_MASK = (1L << CHUNK_SHIFT) - 1;
+
+    private final long length;              // number of bytes
+    private final MappedByteBuffer[] chunks;
+    private final Path file;
+
+    // maps a zero-filled temporary file of the given number of bytes
+    public MappedArray(long bytes) {
+        if (bytes < 0) throw new IllegalArgumentException("size must not be negative");
+        if (((bytes + CHUNK_MASK) >>> CHUNK_SHIFT) > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(bytes + " bytes need more than " + Integer.MAX_VALUE + " chunks");
+        }
+        this.length = bytes;
+        try {
+            this.file = Files.createTempFile("percolation", ".map");
+            this.file.toFile().deleteOnExit();     // in case close() is never called
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                int count = (int) ((bytes + CHUNK_MASK) >>> CHUNK_SHIFT);
+                this.chunks = new MappedByteBuffer[count];
+                for (int c = 0; c < count; c++) {
+                    long offset = (long) c << CHUNK_SHIFT;
+                    long size = Math.min(1L << CHUNK_SHIFT, bytes - offset);
+                    chunks[c] = channel.map(FileChannel.MapMode.READ_WRITE, offset, size);
+                    chunks[c].order(ByteOrder.nativeOrder());
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // number of bytes
+    public long length() {
+        return length;
+    }
+
+    public byte getByte(long offset) {
+        return chunks[(int) (offset >>> CHUNK_SHIFT)].get((int) (offset & CHUNK_MASK));
+    }
+
+    public void putByte(long offset, byte value) {
+        chunks[(int) (offset >>> CHUNK_SHIFT)].put((int) (offset & CHUNK_MASK), value);
+    }
+
+    // offset must be a multiple of 8, so a long never straddles two chunks
+    public long getLong(long offset) {
+        return chunks[(int) (offset >>> CHUNK_SHIFT)].getLong((int) (offset & CHUNK_MASK));
+    }
+
+    public void putLong(long offset, long value) {
+        chunks[(int) (offset >>> CHUNK_SHIFT)].putLong((int) (offset & CHUNK_MASK), value);
+    }
+
+    // deletes the backing file, the mapping itself is released once the buffers are collected
+    @Override
+    public void close() {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,222 @@
+import edu.princeton.cs.algs4.StdOut;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/******************************************************************************
+ *  Compilation:  javac-algs4 NewmanZiff.java
+ *  Execution:    java-algs4 NewmanZiff n trials [seed]
+ *
+ *  Newman-Ziff single-sweep percolation engine.
+ *  Instead of stopping a trial at the moment the grid percolates, every trial
+ *  opens ALL n*n sites in a random order and records, after each open,
+ *  whether the grid percolates and the size of the largest cluster.
+ *  One sweep therefore gives the whole curve for that trial, at a cost of
+ *  about n^2 unions (nearly linear with WeightedQuickUnionUF).
+ *
+ *  Averaging the sweeps gives Q(k), the value of an observable when exactly
+ *  k sites are open. The value at an occupation probability p is then the
+ *  binomial convolution
+ *
+ *      Q(p) = sum over k of C(N, k) p^k (1-p)^(N-k) Q(k),    N = n*n
+ *
+ *  so any number of p values can be read off the same sweeps.
+ *
+ *  % java-algs4 NewmanZiff 64 100
+ *  p          percolates   largest cluster
+ *  0.500000   0.000000     0.041815
+ *  ...
+ *****************************************************************************/
+
+public class NewmanZiff {
+    // per-root status bits, merged when clusters join
+    private static final byte TOP = 1;
+    private static final byte BOTTOM = 2;
+
+    private final int n;
+    private final int trials;
+    private final double[] percolates;      // percolates[k] = fraction of sweeps percolating with k open sites
+    private final double[] largest;         // largest[k] = mean largest cluster fraction with k open sites
+
+    // performs independent sweeps on an n-by-n grid, reproducible from seed
+    public NewmanZiff(int n, int trials, long seed) {
+        if (n <= 0 || trials <= 0) {
+            throw new IllegalArgumentException("both n and trials should be greater than 0");
+        }
+
+        this.n = n;
+        this.trials = trials;
+
+        int total = n * n;
+        double[] percolatesSum = new double[total + 1];
+        double[] largestSum = new double[total + 1];
+
+        // the permutation array is reused, a reshuffle of any permutation is still uniform
+        SplittableRandom rng = new SplittableRandom(seed);
+        int[] order = new int[total];
+        for (int k = 0; k < total; k++) order[k] = k;
+
+        for (int t = 0; t < trials; t++) {
+            shuffle(order, rng);
+            sweep(order, percolatesSum, largestSum);
+        }
+
+        this.percolates = percolatesSum;
+        this.largest = largestSum;
+        for (int k = 0; k <= total; k++) {
+            this.percolates[k] /= trials;
+            this.largest[k] /= (double) trials * total;
+        }
+    }
+
+    // opens every site in the given order, adding one sample per occupation count
+    private void sweep(int[] order, double[] percolatesSum, double[] largestSum) {
+        WeightedQuickUnionUF uf = new WeightedQuickUnionUF(n * n);
+        boolean[] open = new boolean[n * n];
+        byte[] status = new byte[n * n];    // only meaningful at roots
+
+        boolean percolated = false;
+        int largestCluster = 0;
+
+        for (int k = 0; k < order.length; k++) {
+            int site = order[k];
+            int row = site / n;
+            int col = site % n;
+
+            byte merged = 0;
+            if (row == 0) merged |= TOP;
+            if (row == n - 1) merged |= BOTTOM;
+
+            open[site] = true;
+            if (row > 0 && open[site - n]) merged |= join(uf, status, site, site - n);
+            if (row < n - 1 && open[site + n]) merged |= join(uf, status, site, site + n);
+            if (col > 0 && open[site - 1]) merged |= join(uf, status, site, site - 1);
+            if (col < n - 1 && open[site + 1]) merged |= join(uf, status, site, site + 1);
+
+            int root = uf.find(site);
+            status[root] = merged;
+            if (merged == (TOP | BOTTOM)) percolated = true;
+            largestCluster = Math.max(largestCluster, uf.size(root));
+
+            // k + 1 sites are open at this point
+            if (percolated) percolatesSum[k + 1] += 1;
+            largestSum[k + 1] += largestCluster;
+        }
+    }
+
+    // unions site with its open neighbor, returns the status bits of the neighbor's cluster
+    private static byte join(WeightedQuickUnionUF uf, byte[] status, int site, int neighbor) {
+        byte bits = status[uf.find(neighbor)];
+        uf.union(site, neighbor);
+        return bits;
+    }
+
+    // Fisher-Yates shuffle
+    private static void shuffle(int[] a, SplittableRandom rng) {
+        for (int i = a.length - 1; i > 0; i--) {
+            int j = rng.nextInt(i + 1);
+            int swap = a[i];
+            a[i] = a[j];
+            a[j] = swap;
+        }
+    }
+
+    // number of sweeps averaged
+    public int trials() {
+        return this.trials;
+    }
+
+    // probability that the grid percolates with exactly k open sites
+    public double percolationProbability(int k) {
+        validate(k);
+        return this.percolates[k];
+    }
+
+    // mean fraction of sites in the largest cluster with exactly k open sites
+    public double largestClusterFraction(int k) {
+        validate(k);
+        return this.largest[k];
+    }
+
+    // P(percolates) at each occupation probability in ps
+    public double[] percolationProbability(double[] ps) {
+        return convolve(this.percolates, ps);
+    }
+
+    // mean largest cluster fraction at each occupation probability in ps
+    public double[] largestClusterFraction(double[] ps) {
+        return convolve(this.largest, ps);
+    }
+
+    // validate that k is a valid occupation count
+    private void validate(int k) {
+        if (k < 0 || k > n * n) {
+            throw new IllegalArgumentException("index " + k + " is not between 0 and " + (n * n));
+        }
+    }
+
+    // binomial convolution of the per-count curve q into each p in ps
+    private static double[] convolve(double[] q, double[] ps) {
+        double[] result = new double[ps.length];
+        double[] weights = new double[q.length];
+        for (int i = 0; i < ps.length; i++) {
+            binomialWeights(ps[i], weights);
+            double sum = 0.0;
+            for (int k = 0; k < q.length; k++) sum += weights[k] * q[k];
+            result[i] = sum;
+        }
+        return result;
+    }
+
+    /*
+     * fills w[k] with C(N, k) p^k (1-p)^(N-k), N = w.length - 1.
+     * Starts at the mode with weight 1 and walks outwards with the ratio of
+     * neighboring terms, then normalizes, so nothing overflows for large N.
+     */
+    private static void binomialWeights(double p, double[] w) {
+        if (p < 0.0 || p > 1.0) throw new IllegalArgumentException("p must be between 0 and 1");
+
+        int total = w.length - 1;
+        Arrays.fill(w, 0.0);
+        if (p == 0.0) {
+            w[0] = 1.0;
+            return;
+        }
+        if (p == 1.0) {
+            w[total] = 1.0;
+            return;
+        }
+
+        int mode = (int) Math.min(total, Math.floor((total + 1) * p));
+        double odds = p / (1.0 - p);
+        double sum = w[mode] = 1.0;
+        for (int k = mode + 1; k <= total; k++) {
+            w[k] = w[k - 1] * odds * (total - k + 1) / k;
+            sum += w[k];
+        }
+        for (int k = mode - 1; k >= 0; k--) {
+            w[k] = w[k + 1] / odds * (k + 1) / (total - k);
+            sum += w[k];
+        }
+        for (int k = 0; k <= total; k++) w[k] /= sum;
+    }
+
+    // test client
+    public static void main(String[] args) {
+        int n = Integer.parseInt(args[0]);
+        int trials = Integer.parseInt(args[1]);
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : System.nanoTime();
+
+        NewmanZiff nz = new NewmanZiff(n, trials, seed);
+
+        double[] ps = new double[21];
+        for (int i = 0; i < ps.length; i++) ps[i] = 0.5 + 0.01 * i;
+        double[] perc = nz.percolationProbability(ps);
+        double[] cluster = nz.largestClusterFraction(ps);
+
+        StdOut.printf("%-10s %-12s %s%n", "p", "percolates", "largest cluster");
+        for (int i = 0; i < ps.length; i++) {
+            StdOut.printf("%-10f %-12f %f%n", ps[i], perc[i], cluster[i]);
+        }
+    }
+}
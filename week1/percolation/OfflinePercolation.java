@@ -0,0 +1,367 @@
+import edu.princeton.cs.algs4.StdOut;
+import edu.princeton.cs.algs4.Stopwatch;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.function.IntConsumer;
+
+/******************************************************************************
+ *  Compilation:  javac-algs4 OfflinePercolation.java
+ *  Execution:    java-algs4 OfflinePercolation n events [seed]
+ *
+ *  Percolation where sites can close again, for a timeline known in
+ *  advance: record open / close events and isFull / percolates queries
+ *  in order, then answers() returns the answer to every query as of the
+ *  moment it was made.
+ *
+ *  Union-find can merge but not split, so rebuilding after every close
+ *  costs O(n^2). Instead this is offline dynamic connectivity:
+ *
+ *  - A site is open during an interval of time: from its open event to
+ *    its close event (or the end). Time is counted in queries, since
+ *    nothing needs to be known between two of them.
+ *  - A segment tree over the queries stores each interval at the
+ *    O(log m) nodes that exactly cover it.
+ *  - A depth-first walk of the tree activates a node's sites on the way
+ *    down and undoes them on the way back up, so at a leaf exactly the
+ *    sites open at that query are active. Activating a site unions it
+ *    with its active neighbors; whichever of two neighbors is activated
+ *    second makes their union.
+ *  - The union-find is union by rank WITHOUT path compression, so every
+ *    union changes O(1) entries and can be undone from a log, and a find
+ *    stays O(log n). As in LeanPercolation there are no virtual sites;
+ *    each root carries TOP / BOTTOM bits, and the number of roots with
+ *    both is kept (and undone) to answer percolates().
+ *
+ *  A timeline of m events costs O(m log m log n) time and O(n^2 + m log m)
+ *  memory, the segment tree holding up to O(log m) copies of each interval.
+ *
+ *  The test client checks a random timeline against rebuilding a
+ *  Percolation for every query, then times a large one.
+ *****************************************************************************/
+
+public class OfflinePercolation {
+    // event kinds
+    private static final byte OPEN = 0;
+    private static final byte CLOSE = 1;
+    private static final byte FULL = 2;
+    private static final byte PERCOLATES = 3;
+
+    // root status bits
+    private static final byte TOP = 1;
+    private static final byte BOTTOM = 2;
+
+    // kinds of undo log records
+    private static final int ACTIVATED = 0;
+    private static final int UNITED = 1;
+
+    private final int n;
+    private byte[] kinds = new byte[16];
+    private int[] sites = new int[16];   // 0-based row-major site, unused for PERCOLATES
+    private int events;
+    private int queries;
+    private boolean[] answers;          // cached until the next event
+
+    // union-find with rollback, over the n-by-n sites
+    private int[] parent;
+    private byte[] rank;
+    private byte[] status;              // TOP / BOTTOM of a root
+    private boolean[] active;           // is the site open at the current point in time?
+    private int percolatingRoots;       // roots with both TOP and BOTTOM
+    private int[] log = new int[64];    // undo log, see activate()
+    private int logSize;
+
+    // an empty timeline on an n-by-n grid, all sites initially blocked
+    public OfflinePercolation(int n) {
+        if (n <= 0) throw new IllegalArgumentException("n must be an integer greater than 0");
+        if (n > 46340) throw new IllegalArgumentException("n must be at most 46340 (n * n must fit in an int)");
+        this.n = n;
+    }
+
+    // the site (row, col) opens (no effect if it is open already)
+    public void open(int row, int col) {
+        this.add(OPEN, this.xyTo1d(row, col));
+    }
+
+    // the site (row, col) closes (no effect if it is closed already)
+    public void close(int row, int col) {
+        this.add(CLOSE, this.xyTo1d(row, col));
+    }
+
+    // asks whether (row, col) is full at this point, returns the index of the answer in answers()
+    public int isFull(int row, int col) {
+        this.add(FULL, this.xyTo1d(row, col));
+        return this.queries++;
+    }
+
+    // asks whether the system percolates at this point, returns the index of the answer in answers()
+    public int percolates() {
+        this.add(PERCOLATES, -1);
+        return this.queries++;
+    }
+
+    private void add(byte kind, int site) {
+        if (this.events == this.kinds.length) {
+            this.kinds = Arrays.copyOf(this.kinds, 2 * this.events);
+            this.sites = Arrays.copyOf(this.sites, 2 * this.events);
+        }
+        this.kinds[this.events] = kind;
+        this.sites[this.events] = site;
+        this.events++;
+        this.answers = null;
+    }
+
+    // translates 1-based (row, col) to the 0-based row-major index
+    private int xyTo1d(int row, int col) {
+        if (row <= 0 || row > this.n) throw new IllegalArgumentException(row + " is not a valid row index");
+        if (col <= 0 || col > this.n) throw new IllegalArgumentException(col + " is not a valid col index");
+        return this.n * (row - 1) + (col - 1);
+    }
+
+    // the answers to all queries so far, in the order they were asked
+    public boolean[] answers() {
+        if (this.answers == null) this.answers = this.solve();
+        return this.answers.clone();
+    }
+
+    private boolean[] solve() {
+        int q = this.queries;
+        boolean[] result = new boolean[q];
+        if (q == 0) return result;
+
+        // segment tree over the queries: leaves leaf..leaf+q-1, node i has children 2i and 2i+1
+        int leaf = 1;
+        while (leaf < q) leaf <<= 1;
+
+        // open intervals [from, to) in query numbers, collected per site as the timeline is replayed
+        int[] openedAt = new int[this.n * this.n];
+        Arrays.fill(openedAt, -1);
+        int[] intervalSite = new int[16];
+        int[] intervalFrom = new int[16];
+        int[] intervalTo = new int[16];
+        int intervals = 0;
+        int[] querySite = new int[q];
+        int asked = 0;
+        for (int e = 0; e <= this.events; e++) {
+            boolean end = e == this.events;
+            byte kind = end ? CLOSE : this.kinds[e];
+            if (kind == FULL || kind == PERCOLATES) {
+                querySite[asked++] = kind == FULL ? this.sites[e] : -1;
+                continue;
+            }
+            // at the end, every site still open closes
+            int from = end ? 0 : this.sites[e];
+            int to = end ? openedAt.length : this.sites[e] + 1;
+            for (int site = from; site < to; site++) {
+                if (kind == OPEN) {
+                    if (openedAt[site] < 0) openedAt[site] = asked;
+                } else if (openedAt[site] >= 0) {
+                    if (openedAt[site] < asked) {
+                        if (intervals == intervalSite.length) {
+                            intervalSite = Arrays.copyOf(intervalSite, 2 * intervals);
+                            intervalFrom = Arrays.copyOf(intervalFrom, 2 * intervals);
+                            intervalTo = Arrays.copyOf(intervalTo, 2 * intervals);
+                        }
+                        intervalSite[intervals] = site;
+                        intervalFrom[intervals] = openedAt[site];
+                        intervalTo[intervals] = asked;
+                        intervals++;
+                    }
+                    openedAt[site] = -1;
+                }
+            }
+        }
+
+        // the sites of node i are nodeSites[start[i]] to nodeSites[start[i + 1] - 1]
+        int[] start = new int[2 * leaf + 1];
+        for (int i = 0; i < intervals; i++) cover(intervalFrom[i], intervalTo[i], leaf, node -> start[node + 1]++);
+        for (int i = 1; i <= 2 * leaf; i++) start[i] += start[i - 1];
+        int[] nodeSites = new int[start[2 * leaf]];
+        int[] fill = Arrays.copyOf(start, start.length);
+        for (int i = 0; i < intervals; i++) {
+            int site = intervalSite[i];
+            cover(intervalFrom[i], intervalTo[i], leaf, node -> nodeSites[fill[node]++] = site);
+        }
+
+        this.reset();
+        this.walk(1, 0, leaf, q, start, nodeSites, querySite, result);
+        return result;
+    }
+
+    // the O(log m) nodes whose leaves together are exactly [from, to)
+    private static void cover(int from, int to, int leaf, IntConsumer nodes) {
+        for (int lo = from + leaf, hi = to + leaf; lo < hi; lo >>>= 1, hi >>>= 1) {
+            if ((lo & 1) == 1) nodes.accept(lo++);
+            if ((hi & 1) == 1) nodes.accept(--hi);
+        }
+    }
+
+    // all sites blocked, empty undo log
+    private void reset() {
+        int size = this.n * this.n;
+        this.parent = new int[size];
+        for (int i = 0; i < size; i++) this.parent[i] = i;
+        this.rank = new byte[size];
+        this.status = new byte[size];
+        this.active = new boolean[size];
+        this.percolatingRoots = 0;
+        this.logSize = 0;
+    }
+
+    /*
+     * depth-first walk of the node covering queries [first, first + width): activate
+     * the node's sites, answer the query of a leaf or visit the children, undo
+     */
+    private void walk(int node, int first, int width, int q, int[] start, int[] nodeSites, int[] querySite, boolean[] result) {
+        int mark = this.logSize;
+        for (int i = start[node]; i < start[node + 1]; i++) this.activate(nodeSites[i]);
+
+        if (width == 1) {
+            int site = querySite[first];
+            if (site < 0) result[first] = this.percolatingRoots > 0;
+            else result[first] = this.active[site] && (this.status[this.find(site)] & TOP) != 0;
+        } else {
+            int half = width / 2;
+            this.walk(2 * node, first, half, q, start, nodeSites, querySite, result);
+            // the padding after the last query is skipped
+            if (first + half < q) this.walk(2 * node + 1, first + half, half, q, start, nodeSites, querySite, result);
+        }
+
+        this.rollback(mark);
+    }
+
+    /*
+     * opens a site and unions it with its open neighbors. Every change is logged
+     * as a record ending in its kind: [site, percolatingRoots, ACTIVATED] or
+     * [child, root, rank, status of root, percolatingRoots, UNITED]
+     */
+    private void activate(int site) {
+        int row = site / this.n;
+        int col = site % this.n;
+        this.push(site);
+        this.push(this.percolatingRoots);
+        this.push(ACTIVATED);
+        this.active[site] = true;
+        this.status[site] = (byte) ((row == 0 ? TOP : 0) | (row == this.n - 1 ? BOTTOM : 0));
+        if (this.status[site] == (TOP | BOTTOM)) this.percolatingRoots++;
+
+        if (row > 0) this.join(site, site - this.n);
+        if (row < this.n - 1) this.join(site, site + this.n);
+        if (col > 0) this.join(site, site - 1);
+        if (col < this.n - 1) this.join(site, site + 1);
+    }
+
+    private void join(int site, int neighbor) {
+        if (!this.active[neighbor]) return;
+        int a = this.find(site);
+        int b = this.find(neighbor);
+        if (a == b) return;
+        if (this.rank[a] > this.rank[b]) {
+            int swap = a;
+            a = b;
+            b = swap;
+        }
+        // a goes under b
+        this.push(a);
+        this.push(b);
+        this.push(this.rank[b]);
+        this.push(this.status[b]);
+        this.push(this.percolatingRoots);
+        this.push(UNITED);
+        if (this.status[a] == (TOP | BOTTOM)) this.percolatingRoots--;
+        if (this.status[b] == (TOP | BOTTOM)) this.percolatingRoots--;
+        this.parent[a] = b;
+        if (this.rank[a] == this.rank[b]) this.rank[b]++;
+        this.status[b] |= this.status[a];
+        if (this.status[b] == (TOP | BOTTOM)) this.percolatingRoots++;
+    }
+
+    // no path compression, so that every union can be undone
+    private int find(int p) {
+        while (p != this.parent[p]) p = this.parent[p];
+        return p;
+    }
+
+    private void push(int value) {
+        if (this.logSize == this.log.length) this.log = Arrays.copyOf(this.log, 2 * this.logSize);
+        this.log[this.logSize++] = value;
+    }
+
+    // undoes logged changes until the log is back to mark entries
+    private void rollback(int mark) {
+        while (this.logSize > mark) {
+            int kind = this.log[--this.logSize];
+            if (kind == UNITED) {
+                this.percolatingRoots = this.log[--this.logSize];
+                byte rootStatus = (byte) this.log[--this.logSize];
+                byte rootRank = (byte) this.log[--this.logSize];
+                int root = this.log[--this.logSize];
+                int child = this.log[--this.logSize];
+                this.parent[child] = child;
+                this.rank[root] = rootRank;
+                this.status[root] = rootStatus;
+            } else {
+                this.percolatingRoots = this.log[--this.logSize];
+                int site = this.log[--this.logSize];
+                this.active[site] = false;
+                this.status[site] = 0;
+            }
+        }
+    }
+
+    // number of events (opens, closes and queries) recorded
+    public int events() {
+        return this.events;
+    }
+
+    // test client
+    public static void main(String[] args) {
+        int n = Integer.parseInt(args[0]);
+        int events = Integer.parseInt(args[1]);
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 1;
+
+        // small grid: compare with a Percolation rebuilt from the open sites at every query
+        SplittableRandom rng = new SplittableRandom(seed);
+        int small = 6;
+        OfflinePercolation check = new OfflinePercolation(small);
+        boolean[] open = new boolean[small * small];
+        boolean[] expected = new boolean[2000];
+        for (int asked = 0; asked < expected.length; ) {
+            int row = rng.nextInt(small) + 1;
+            int col = rng.nextInt(small) + 1;
+            int kind = rng.nextInt(8);
+            if (kind < 4) {
+                check.open(row, col);
+                open[(row - 1) * small + col - 1] = true;
+            } else if (kind < 6) {
+                check.close(row, col);
+                open[(row - 1) * small + col - 1] = false;
+            } else {
+                Percolation rebuilt = new Percolation(small);
+                for (int site = 0; site < open.length; site++) if (open[site]) rebuilt.open(site);
+                if (kind == 6) expected[check.isFull(row, col)] = rebuilt.isFull(row, col);
+                else expected[check.percolates()] = rebuilt.percolates();
+                asked++;
+            }
+        }
+        if (!Arrays.equals(expected, check.answers())) throw new IllegalStateException("answers differ from rebuilding");
+        StdOut.println("agrees with rebuilding Percolation on " + check.events() + " events");
+
+        // large timeline: damage and repair, with a query every 10 events
+        OfflinePercolation timeline = new OfflinePercolation(n);
+        for (int e = 0; e < events; e++) {
+            int row = rng.nextInt(n) + 1;
+            int col = rng.nextInt(n) + 1;
+            if (e % 10 == 9) timeline.percolates();
+            else if (rng.nextInt(5) < 3) timeline.open(row, col);
+            else timeline.close(row, col);
+        }
+        Stopwatch timer = new Stopwatch();
+        boolean[] answers = timeline.answers();
+        int percolating = 0;
+        for (boolean answer : answers) if (answer) percolating++;
+        StdOut.printf("%-20s= %d x %d, %d events%n", "timeline", n, n, timeline.events());
+        StdOut.printf("%-20s= %d of %d%n", "percolating", percolating, answers.length);
+        StdOut.printf("%-20s= %.3f s%n", "time", timer.elapsedTime());
+    }
+}
@@ -0,0 +1,217 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/******************************************************************************
+ *  Fast readers for union-find input files: an integer n followed by pairs
+ *  of integers p q (between 0 and n-1), as in tinyUF.txt / largeUF.txt.
+ *
+ *  Two formats, told apart by the first four bytes:
+ *
+ *  text     the usual whitespace separated decimal integers. The file is
+ *           memory-mapped and parsed straight from the bytes, without a
+ *           Scanner, Strings or regular expressions. Files over 2 GB are
+ *           mapped one window at a time.
+ *
+ *  binary   MAGIC, then n, then the pairs as p, q, p, q, ..., all 4 byte
+ *           little-endian ints. Nothing to parse at all, and about half the
+ *           size of largeUF.txt. Read through a 1 MB direct buffer. The
+ *           header is checked on open: n > 0, and 8 bytes per pair after it.
+ *
+ *  writeBinary() converts any input into the binary format.
+ *****************************************************************************/
+
+public class PairInput implements Closeable {
+    public static final int MAGIC = 0x31424655;     // "UFB1" read little-endian
+
+    private static final int WINDOW = 1 << 30;      // bytes mapped at a time (text)
+    private static final int BUFFER = 1 << 20;      // bytes read at a time (binary)
+
+    // receives the pairs, in file order
+    public interface Sink {
+        void pair(int p, int q);
+    }
+
+    private final FileChannel channel;
+    private final long size;                        // file size in bytes
+    private final boolean binary;
+    private final int n;
+
+    // text parser state: position in the file, and the mapped window around it
+    private long position;
+    private long windowStart;
+    private MappedByteBuffer window;
+
+    // opens the file and reads n, the format is detected from the first bytes
+    public PairInput(Path file) {
+        try {
+            this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        // a bad header must not leak the open file, whatever the format
+        try {
+            this.size = this.channel.size();
+            ByteBuffer head = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+            while (head.hasRemaining() && channel.read(head) >= 0) continue;
+            head.flip();
+            this.binary = head.remaining() == 8 && head.getInt(0) == MAGIC;
+            if (this.binary) {
+                this.n = head.getInt(4);
+                this.position = 8;
+                // n must be positive, and the header followed by whole pairs only
+                if (this.n <= 0) throw new IllegalArgumentException("n = " + this.n + " in " + file + " should be greater than 0");
+                if ((this.size - 8) % 8 != 0) {
+                    throw new IllegalArgumentException(file + " is " + this.size + " bytes, not 8 plus 8 per pair");
+                }
+            } else {
+                this.position = 0;
+                this.windowStart = -1;
+                int first = this.nextInt();
+                if (first < 0) throw new IllegalArgumentException("missing n in " + file);
+                this.n = first;
+            }
+        } catch (IOException e) {
+            this.closeAfter(e);
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            this.closeAfter(e);
+            throw e;
+        }
+    }
+
+    // closes the channel after a failed open, keeping the original exception
+    private void closeAfter(Exception e) {
+        try {
+            this.channel.close();
+        } catch (IOException suppressed) {
+            e.addSuppressed(suppressed);
+        }
+    }
+
+    // number of elements
+    public int n() {
+        return this.n;
+    }
+
+    // is the file in the binary format?
+    public boolean isBinary() {
+        return this.binary;
+    }
+
+    // hands every remaining pair to the sink, returns the number of pairs
+    public long forEach(Sink sink) {
+        try {
+            return this.binary ? this.forEachBinary(sink) : this.forEachText(sink);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private long forEachText(Sink sink) throws IOException {
+        long pairs = 0;
+        while (true) {
+            int p = this.nextInt();
+            if (p < 0) return pairs;
+            int q = this.nextInt();
+            if (q < 0) throw new IllegalArgumentException("odd number of integers after n");
+            sink.pair(p, q);
+            pairs++;
+        }
+    }
+
+    // next non-negative decimal integer of the text, -1 at the end of the file
+    private int nextInt() throws IOException {
+        long size = this.size;
+        int b = -1;
+        while (this.position < size) {
+            b = this.byteAt(this.position);
+            if (b != ' ' && b != '\n' && b != '\r' && b != '\t') break;
+            this.position++;
+        }
+        if (this.position >= size) return -1;
+        if (b < '0' || b > '9') throw new IllegalArgumentException("unexpected '" + (char) b + "' at byte " + this.position);
+
+        long value = 0;
+        while (this.position < size) {
+            b = this.byteAt(this.position);
+            if (b < '0' || b > '9') break;
+            value = 10 * value + (b - '0');
+            if (value > Integer.MAX_VALUE) throw new IllegalArgumentException("integer too large at byte " + this.position);
+            this.position++;
+        }
+        return (int) value;
+    }
+
+    // byte at the given file position, remapping the window when we leave it
+    private int byteAt(long at) throws IOException {
+        if (this.windowStart < 0 || at - this.windowStart >= this.window.limit()) {
+            this.windowStart = at;
+            long length = Math.min(WINDOW, this.size - at);
+            this.window = this.channel.map(FileChannel.MapMode.READ_ONLY, at, length);
+        }
+        return this.window.get((int) (at - this.windowStart));
+    }
+
+    private long forEachBinary(Sink sink) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER).order(ByteOrder.LITTLE_ENDIAN);
+        this.channel.position(this.position);
+        long pairs = 0;
+        while (this.channel.read(buffer) >= 0 || buffer.position() > 0) {
+            buffer.flip();
+            if (buffer.remaining() < 8) {
+                if (buffer.hasRemaining()) throw new IllegalArgumentException("truncated pair at the end of the file");
+                break;
+            }
+            while (buffer.remaining() >= 8) {
+                sink.pair(buffer.getInt(), buffer.getInt());
+                pairs++;
+            }
+            buffer.compact();
+        }
+        return pairs;
+    }
+
+    @Override
+    public void close() {
+        try {
+            this.channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // copies the pairs of in (either format) to out in the binary format, returns the number of pairs
+    public static long writeBinary(Path in, Path out) {
+        try (PairInput input = new PairInput(in);
+             FileChannel channel = FileChannel.open(out, StandardOpenOption.CREATE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(MAGIC).putInt(input.n());
+            long pairs = input.forEach((p, q) -> {
+                if (buffer.remaining() < 8) drain(buffer, channel);
+                buffer.putInt(p).putInt(q);
+            });
+            drain(buffer, channel);
+            return pairs;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void drain(ByteBuffer buffer, FileChannel channel) {
+        try {
+            buffer.flip();
+            while (buffer.hasRemaining()) channel.write(buffer);
+            buffer.clear();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
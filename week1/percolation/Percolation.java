@@ -2,6 +2,8 @@ import edu.princeton.cs.algs4.StdRandom;
 import edu.princeton.cs.algs4.WeightedQuickUnionUF;
 
 public class Percolation {
+    private static final UFMetrics METRICS = UFMetrics.register("Percolation");
+
     private final int n;                                    // stores grid size
     private final boolean[] siteStatus;                     // true = open, false = closed
     private final WeightedQuickUnionUF sites;               // data structure for storing sites
@@ -45,8 +47,22 @@ public class Percolation {
         }
 
         // convert the site from 2d to 1d to index
-        int i = this.xyTo1d(row, col);
+        this.openFlat(this.xyTo1d(row, col), row, col);
+    }
 
+    /*
+     * opens the site with row-major flat index site (0 to n*n - 1) if it is not open already.
+     * Lets trial drivers that already work in flat indices skip the 2D validation.
+     */
+    public void open(int site) {
+        if (site < 0 || site >= this.maxSiteIndex) {
+            throw new IllegalArgumentException("index " + site + " is not between 0 and " + (this.maxSiteIndex - 1));
+        }
+        this.openFlat(site + 1, site / this.n + 1, site % this.n + 1);
+    }
+
+    // shared by both open() entry points, i is the already validated 1D index of (row, col)
+    private void openFlat(int i, int row, int col) {
         if (this.siteStatus[i]) return;
 
         // Only open a site if it was previously closed
@@ -73,6 +89,8 @@ public class Percolation {
         int leftNeighbor = i - 1;
         int rightNeighbor = i + 1;
 
+        if (UFMetrics.ENABLED) METRICS.open(unionCalls(i, row, col));
+
         if (withinGrid(topNeighbor) && flatIsOpen(topNeighbor)) {
             sites.union(i, topNeighbor);
             sitesWithoutBottom.union(i, topNeighbor);
@@ -128,6 +146,18 @@ public class Percolation {
         return !(col == this.n);  // if site is in col n, it has no right neighbor
     }
 
+    // union() calls openFlat() is about to make for (row, col), for the metrics
+    private int unionCalls(int i, int row, int col) {
+        int calls = 0;
+        if (row == 1) calls += 2;
+        if (row == this.n) calls += 1;
+        if (withinGrid(i - this.n) && flatIsOpen(i - this.n)) calls += 2;
+        if (withinGrid(i + this.n) && flatIsOpen(i + this.n)) calls += 2;
+        if (hasLeftNeighbor(col) && flatIsOpen(i - 1)) calls += 2;
+        if (hasRightNeighbor(col) && flatIsOpen(i + 1)) calls += 2;
+        return calls;
+    }
+
     // ******************** END OF HELPER METHODS ********************
 
     // returns the number of open sites
@@ -164,14 +194,21 @@ public class Percolation {
         int n = Integer.parseInt(args[0]); // grid size
         Percolation perc = new Percolation(n);
 
-        while (!perc.percolates()) {
-            // randomize selection of sites
-            int row = StdRandom.uniform(1, n + 1);  // Returns random int from 1 to n
-            int col = StdRandom.uniform(1, n + 1);
+        // open sites in the order of a Fisher-Yates shuffle, drawn lazily as we go
+        int[] order = new int[n * n];
+        for (int k = 0; k < order.length; k++) order[k] = k;
+
+        for (int k = 0; !perc.percolates(); k++) {
+            int j = k + StdRandom.uniform(order.length - k);
+            int site = order[j];
+            order[j] = order[k];
+            order[k] = site;
 
-            System.out.printf("(row: %d, col: %d) [%d]\n", row, col, perc.xyTo1d(row, col));
+            int row = site / n + 1;
+            int col = site % n + 1;
+            System.out.printf("(row: %d, col: %d) [%d]\n", row, col, site + 1);
 
-            perc.open(row, col);
+            perc.open(site);
 
             boolean fullness = perc.isFull(row, col);
             System.out.printf("full         " + fullness + "%n");
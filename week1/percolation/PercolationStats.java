@@ -1,12 +1,32 @@
 import edu.princeton.cs.algs4.StdRandom;
-import edu.princeton.cs.algs4.StdStats;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 public class PercolationStats {
     // 1.96 represents the 97.5 percentile in a normal distribution
     // 95% of hte area under a normal curve lies within 1.96 stddevs
-    private static final double CONFIDENCE_LVL = 1.96;
+    static final double CONFIDENCE_LVL = 1.96;
+
+    // trials are handed out in fixed-size blocks, each block drawing from its own
+    // random stream, so the block layout (and the result) never depends on thread count
+    static final int TRIALS_PER_BLOCK = 8;
+
+    // adaptive runs never stop on a confidence interval estimated from fewer trials
+    private static final int MIN_ADAPTIVE_TRIALS = 32;
+
+    // checkpoint file: MAGIC n maxTrials blocks halfWidth seed, then the Welford state (56 bytes)
+    private static final int CHECKPOINT_MAGIC = 0x31435350;    // "PSC1" read little-endian
+    private static final int CHECKPOINT_BYTES = 56;
 
     // instance variables
+    private final int trials;
     private final double mean;
     private final double stddev;
     private final double confidenceLow;
@@ -14,32 +34,370 @@ public class PercolationStats {
 
     // perform independent trials on an n-by-n grid
     public PercolationStats(int n, int trials) {
-        if (n <= 0 || trials <= 0) {
+        this(n, trials, StdRandom.uniform(Long.MAX_VALUE));
+    }
+
+    // perform independent trials serially, reproducible from a single master seed
+    public PercolationStats(int n, int trials, long seed) {
+        this(n, trials, seed, null);
+    }
+
+    /*
+     * perform independent trials spread over the given pool (serially if pool is null).
+     * A serial run and a parallel run with the same seed give identical results.
+     */
+    public PercolationStats(int n, int trials, long seed, ForkJoinPool pool) {
+        this(n, trials, Double.NaN, seed, pool, null);
+    }
+
+    /*
+     * same, saving progress to checkpoint after every block of trials. If checkpoint
+     * already exists (from a run with the same n, trials and seed that was cut short)
+     * the run continues after the last block saved there, with the same end result
+     * as a run that was never interrupted.
+     */
+    public PercolationStats(int n, int trials, long seed, ForkJoinPool pool, Path checkpoint) {
+        this(n, trials, Double.NaN, seed, pool, checkpoint);
+    }
+
+    /*
+     * perform trials until the 95% confidence interval is at most halfWidth either side
+     * of the mean, or maxTrials trials have run, whichever comes first (see trials()).
+     * Reproducible from seed, and independent of the pool size, like the fixed-count mode.
+     */
+    public PercolationStats(int n, double halfWidth, int maxTrials, long seed, ForkJoinPool pool) {
+        this(n, maxTrials, validHalfWidth(halfWidth), seed, pool, null);
+    }
+
+    // adaptive mode with a checkpoint file, as above
+    public PercolationStats(int n, double halfWidth, int maxTrials, long seed, ForkJoinPool pool, Path checkpoint) {
+        this(n, maxTrials, validHalfWidth(halfWidth), seed, pool, checkpoint);
+    }
+
+    private static double validHalfWidth(double halfWidth) {
+        if (!(halfWidth > 0)) throw new IllegalArgumentException("halfWidth should be greater than 0");
+        return halfWidth;
+    }
+
+    // shared by both modes, a NaN halfWidth means "run all maxTrials", a null checkpoint means none
+    private PercolationStats(int n, int maxTrials, double halfWidth, long seed, ForkJoinPool pool, Path checkpoint) {
+        if (n <= 0 || maxTrials <= 0) {
             throw new IllegalArgumentException("both n and trials should be greater than 0");
         }
 
-        double[] results = new double[trials];
+        // running statistics (Welford), nothing per trial is kept
+        Welford total = new Welford();
+        int merged = 0;         // blocks merged into total
+
+        if (checkpoint != null && Files.exists(checkpoint)) {
+            merged = resume(checkpoint, n, maxTrials, halfWidth, seed, total);
+        }
 
-        // run percolation trails for T number of times
-        for (int i = 0; i < trials; i++) {
-            Percolation perc = new Percolation(n);
+        // one independent stream per block, split off the master stream in block order;
+        // the blocks already in the checkpoint just skip their splits
+        SplittableRandom master = new SplittableRandom(seed);
+        for (int b = 0; b < merged; b++) master.split();
+        int waveSize = pool == null ? 1 : 4 * pool.getParallelism();
+        int scheduled = (int) total.count();
+        Progress progress = new Progress(n, maxTrials, halfWidth, seed, checkpoint, total, merged);
+        Workspaces workspaces = new Workspaces();
 
-            // run a trial until percolation is reached
-            while (!perc.percolates()) {
-                // randomize selection of sites
-                int row = StdRandom.uniform(1, n + 1);  // Returns random int from 1 to n
-                int col = StdRandom.uniform(1, n + 1);
-                perc.open(row, col);
+        try {
+            while (!progress.done) {
+                // run the next wave of blocks, merged and saved one by one as they finish
+                int blocks = Math.min(waveSize, (maxTrials - scheduled + TRIALS_PER_BLOCK - 1) / TRIALS_PER_BLOCK);
+                Block[] wave = new Block[blocks];
+                for (int b = 0; b < blocks; b++) {
+                    int size = Math.min(TRIALS_PER_BLOCK, maxTrials - scheduled);
+                    wave[b] = new Block(n, size, master.split(), workspaces);
+                    scheduled += size;
+                }
+                progress.start(wave);
+                TrialBlocks task = new TrialBlocks(wave, progress, 0, blocks);
+                if (pool == null) task.runSerially();
+                else pool.invoke(task);
             }
-
-            results[i] = (double) perc.numberOfOpenSites() / (n * n);
+        } finally {
+            workspaces.clear();
         }
 
         // Statistics
-        this.mean = StdStats.mean(results);
-        this.stddev = StdStats.stddev(results);
-        this.confidenceLow = this.mean - PercolationStats.CONFIDENCE_LVL * (this.stddev / Math.sqrt(trials));
-        this.confidenceHigh = this.mean + PercolationStats.CONFIDENCE_LVL * (this.stddev / Math.sqrt(trials));
+        this.trials = (int) total.count();
+        this.mean = total.mean();
+        this.stddev = total.stddev();
+        this.confidenceLow = this.mean - PercolationStats.CONFIDENCE_LVL * (this.stddev / Math.sqrt(this.trials));
+        this.confidenceHigh = this.mean + PercolationStats.CONFIDENCE_LVL * (this.stddev / Math.sqrt(this.trials));
+    }
+
+    // has the run reached maxTrials, or (adaptive) the target confidence half-width?
+    private static boolean finished(Welford total, int maxTrials, double halfWidth) {
+        if (total.count() == maxTrials) return true;
+        return total.count() >= MIN_ADAPTIVE_TRIALS
+                && CONFIDENCE_LVL * total.stddev() / Math.sqrt(total.count()) <= halfWidth;
+    }
+
+    /*
+     * Merges the blocks of the current wave into the running total in block order, each as
+     * soon as it and every block before it are done, checking the stopping rule after every
+     * block so the stopping point does not depend on how many blocks ran in parallel.
+     * The checkpoint is saved after every merge, so an interrupted run only loses the
+     * blocks that were still running or waiting on an earlier one.
+     */
+    private static class Progress {
+        private final int n;
+        private final int maxTrials;
+        private final double halfWidth;
+        private final long seed;
+        private final Path checkpoint;
+        private final Welford total;
+        private int merged;                 // blocks merged into total
+        private volatile boolean done;      // once set, blocks still to run are skipped
+
+        private Block[] wave;
+        private boolean[] completed;
+        private int next;                   // first block of the wave not merged yet
+
+        Progress(int n, int maxTrials, double halfWidth, long seed, Path checkpoint, Welford total, int merged) {
+            this.n = n;
+            this.maxTrials = maxTrials;
+            this.halfWidth = halfWidth;
+            this.seed = seed;
+            this.checkpoint = checkpoint;
+            this.total = total;
+            this.merged = merged;
+            this.done = finished(total, maxTrials, halfWidth);
+        }
+
+        synchronized void start(Block[] wave) {
+            this.wave = wave;
+            this.completed = new boolean[wave.length];
+            this.next = 0;
+        }
+
+        synchronized void completed(int block) {
+            completed[block] = true;
+            int before = merged;
+            while (!done && next < wave.length && completed[next]) {
+                total.merge(wave[next++].stats);
+                merged++;
+                done = finished(total, maxTrials, halfWidth);
+            }
+            if (checkpoint != null && merged > before) save(checkpoint, n, maxTrials, halfWidth, seed, merged, total);
+        }
+    }
+
+    private static void save(Path checkpoint, int n, int maxTrials, double halfWidth, long seed, int blocks, Welford total) {
+        try (SnapshotFile out = SnapshotFile.create(checkpoint, CHECKPOINT_BYTES)) {
+            out.putInt(CHECKPOINT_MAGIC);
+            out.putInt(n);
+            out.putInt(maxTrials);
+            out.putInt(blocks);
+            out.putDouble(halfWidth);
+            out.putLong(seed);
+            total.writeTo(out);
+            out.commit();
+        }
+    }
+
+    // loads the statistics saved in checkpoint into total, returns the number of blocks they cover
+    private static int resume(Path checkpoint, int n, int maxTrials, double halfWidth, long seed, Welford total) {
+        try (SnapshotFile in = SnapshotFile.open(checkpoint)) {
+            if (in.length() != CHECKPOINT_BYTES || in.getInt() != CHECKPOINT_MAGIC) {
+                throw new IllegalArgumentException(checkpoint + " is not a PercolationStats checkpoint");
+            }
+            int savedN = in.getInt();
+            int savedTrials = in.getInt();
+            int blocks = in.getInt();
+            double savedHalfWidth = in.getDouble();
+            long savedSeed = in.getLong();
+            if (savedN != n || savedTrials != maxTrials || savedSeed != seed
+                    || Double.doubleToLongBits(savedHalfWidth) != Double.doubleToLongBits(halfWidth)) {
+                throw new IllegalArgumentException(checkpoint + " belongs to a run with other parameters");
+            }
+            total.readFrom(in);
+            return blocks;
+        }
+    }
+
+    /*
+     * run a trial on a reset engine until percolation is reached, returns fraction of sites opened.
+     * Sites are opened in the order of a Fisher-Yates shuffle of order[], drawn lazily
+     * one position at a time, so no draw is wasted on an already open site.
+     * order[] must hold a permutation of 0 to n*n - 1 and is reused across trials
+     * (any starting permutation still yields a uniformly random order).
+     */
+    private static double runTrial(LeanPercolation perc, int[] order, SplittableRandom rng) {
+        perc.reset();
+
+        int k = 0;
+        while (!perc.percolates()) {
+            int j = k + rng.nextInt(order.length - k);
+            int site = order[j];
+            order[j] = order[k];
+            order[k] = site;
+            perc.open(site);
+            k++;
+        }
+
+        return (double) perc.numberOfOpenSites() / order.length;
+    }
+
+    /*
+     * Engine and permutation per worker thread, reused by every block that thread runs.
+     * Owned by one run (or one sweep) and cleared when it ends, so pool threads that
+     * outlive the run don't keep an n-by-n grid each.
+     */
+    static class Workspaces {
+        private final Map<Thread, Workspace> byThread = new ConcurrentHashMap<>();
+
+        // the workspace of the calling thread, (re)allocated only when n changes
+        Workspace of(int n) {
+            Thread thread = Thread.currentThread();
+            Workspace w = byThread.get(thread);
+            if (w == null || w.n != n) {
+                w = new Workspace(n);
+                byThread.put(thread, w);
+            }
+            return w;
+        }
+
+        void clear() {
+            byThread.clear();
+        }
+    }
+
+    private static class Workspace {
+        private final int n;
+        private final LeanPercolation perc;
+        private final int[] order;
+
+        Workspace(int n) {
+            this.n = n;
+            this.perc = new LeanPercolation(n);
+            this.order = new int[n * n];
+        }
+    }
+
+    /*
+     * Running mean and variance (Welford's algorithm), plus the pairwise merge
+     * of Chan et al. so per-block statistics can be combined without keeping samples.
+     */
+    static class Welford {
+        private long count;
+        private double mean;
+        private double m2;      // sum of squared differences from the mean
+
+        void add(double x) {
+            count++;
+            double delta = x - mean;
+            mean += delta / count;
+            m2 += delta * (x - mean);
+        }
+
+        void merge(Welford other) {
+            if (other.count == 0) return;
+            long combined = count + other.count;
+            double delta = other.mean - mean;
+            mean += delta * other.count / combined;
+            m2 += other.m2 + delta * delta * ((double) count * other.count / combined);
+            count = combined;
+        }
+
+        long count() {
+            return count;
+        }
+
+        double mean() {
+            return count == 0 ? Double.NaN : mean;
+        }
+
+        // sample standard deviation, NaN for fewer than 2 samples (like StdStats.stddev)
+        double stddev() {
+            return Math.sqrt(m2 / (count - 1));
+        }
+
+        void writeTo(SnapshotFile out) {
+            out.putLong(count);
+            out.putDouble(mean);
+            out.putDouble(m2);
+        }
+
+        void readFrom(SnapshotFile in) {
+            count = in.getLong();
+            mean = in.getDouble();
+            m2 = in.getDouble();
+        }
+    }
+
+    // a block of trials sharing one random stream (also run by PercolationSweep)
+    static class Block {
+        private final int n;
+        private final int trials;
+        private final SplittableRandom rng;
+        private final Workspaces workspaces;
+        private final Welford stats = new Welford();
+
+        Block(int n, int trials, SplittableRandom rng, Workspaces workspaces) {
+            this.n = n;
+            this.trials = trials;
+            this.rng = rng;
+            this.workspaces = workspaces;
+        }
+
+        Welford stats() {
+            return stats;
+        }
+
+        void run() {
+            Workspace w = workspaces.of(n);
+            // restart from the identity so the block's trials don't depend on which
+            // blocks ran on this thread before
+            int[] order = w.order;
+            for (int k = 0; k < order.length; k++) order[k] = k;
+            for (int t = 0; t < trials; t++) stats.add(runTrial(w.perc, order, rng));
+        }
+    }
+
+    // fork/join task over a range of blocks [lo, hi)
+    private static class TrialBlocks extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Block[] blocks;
+        private final Progress progress;
+        private final int lo;
+        private final int hi;
+
+        TrialBlocks(Block[] blocks, Progress progress, int lo, int hi) {
+            this.blocks = blocks;
+            this.progress = progress;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo == 1) {
+                run(lo);
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            invokeAll(new TrialBlocks(blocks, progress, lo, mid), new TrialBlocks(blocks, progress, mid, hi));
+        }
+
+        void runSerially() {
+            for (int b = lo; b < hi; b++) run(b);
+        }
+
+        private void run(int b) {
+            if (progress.done) return;
+            blocks[b].run();
+            progress.completed(b);
+        }
+    }
+
+    // number of trials performed
+    public int trials() {
+        return this.trials;
     }
 
     // sample mean of percolation threshold
@@ -65,14 +423,36 @@ public class PercolationStats {
     // test client
     public static void main(String[] args) {
         int n = Integer.parseInt(args[0]);
-        int t = Integer.parseInt(args[1]);
 
-        PercolationStats stats = new PercolationStats(n, t);
+        /*
+         * java-algs4 PercolationStats n T [threads [seed [checkpoint]]]
+         * java-algs4 PercolationStats n -adaptive halfWidth maxTrials [threads [seed [checkpoint]]]
+         * (-adaptive runs until the 95% confidence half-width is at most halfWidth;
+         * rerunning with the same arguments after an interruption resumes from checkpoint)
+         */
+        boolean adaptive = args[1].equals("-adaptive");
+        int next = adaptive ? 4 : 2;
+        int threads = args.length > next ? Integer.parseInt(args[next]) : 0;
+        long seed = args.length > next + 1 ? Long.parseLong(args[next + 1]) : StdRandom.uniform(Long.MAX_VALUE);
+        Path checkpoint = args.length > next + 2 ? Paths.get(args[next + 2]) : null;
+
+        ForkJoinPool pool = threads > 0 ? new ForkJoinPool(threads) : null;
+        PercolationStats stats;
+        try {
+            if (adaptive) {
+                stats = new PercolationStats(n, Double.parseDouble(args[2]), Integer.parseInt(args[3]), seed, pool, checkpoint);
+            } else {
+                stats = new PercolationStats(n, Integer.parseInt(args[1]), seed, pool, checkpoint);
+            }
+        } finally {
+            if (pool != null) pool.shutdown();
+        }
         double mean = stats.mean();
         double stddev = stats.stddev();
         double confLo = stats.confidenceLo();
         double confHi = stats.confidenceHi();
 
+        System.out.printf("%-20s= %d%n", "trials", stats.trials());
         System.out.printf("%-20s= %f%n", "mean", mean);
         System.out.printf("%-20s= %f%n", "stddev", stddev);
         System.out.printf("%-20s= [%f, %f]%n", "95% confidence interval", confLo, confHi);
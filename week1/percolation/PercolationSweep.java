@@ -0,0 +1,266 @@
+import edu.princeton.cs.algs4.StdOut;
+import edu.princeton.cs.algs4.Stopwatch;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/******************************************************************************
+ *  Compilation:  javac-algs4 PercolationSweep.java
+ *  Execution:    java-algs4 PercolationSweep threads seed csv n:trials...
+ *
+ *  Finite-size scaling sweep: PercolationStats for many grid sizes in one
+ *  JVM, on one shared ForkJoinPool, and an estimate of the threshold of
+ *  the infinite lattice from the results.
+ *
+ *  Every size is cut into the same blocks of trials as in PercolationStats
+ *  (one random stream per block, split off a per-size seed in block order),
+ *  and the blocks of ALL sizes are submitted together, most expensive
+ *  (n * n * trials) first, so the big grids don't start last and leave a
+ *  long tail with idle threads. The result for each n is therefore the same
+ *  as java-algs4 PercolationStats n trials 0 seed(n), with seed(n) as in the
+ *  csv. As soon as the last block of a size is done its line is written to
+ *  the csv (use - for standard output):
+ *
+ *      n,trials,seed,mean,stddev,confidenceLo,confidenceHi,cpuSeconds
+ *
+ *  Scaling: the mean threshold of an n-by-n grid approaches p_inf as
+ *
+ *      p(n) = p_inf + a * n^(-1/nu),    nu = 4/3 in two dimensions
+ *
+ *  which is a straight line in x = n^(-3/4). p_inf is its intercept, from a
+ *  least squares fit weighted by 1 / (standard error of each mean)^2.
+ *
+ *  % java-algs4 PercolationSweep 4 1 sweep.csv 16:4000 32:4000 64:2000 128:1000 256:400
+ *****************************************************************************/
+
+public class PercolationSweep {
+    private static final double EXPONENT = -0.75;      // -1/nu
+
+    // one grid size: its blocks, and what is known once they are all done
+    private static class Size {
+        private final int n;
+        private final int trials;
+        private final long seed;
+        private final PercolationStats.Block[] blocks;
+        private final AtomicInteger remaining;
+        private final long[] nanos;                     // time spent in each block
+        private PercolationStats.Welford total;
+
+        Size(int n, int trials, long seed, PercolationStats.Workspaces workspaces) {
+            this.n = n;
+            this.trials = trials;
+            this.seed = seed;
+            int count = (trials + PercolationStats.TRIALS_PER_BLOCK - 1) / PercolationStats.TRIALS_PER_BLOCK;
+            this.blocks = new PercolationStats.Block[count];
+            this.nanos = new long[count];
+            this.remaining = new AtomicInteger(count);
+            SplittableRandom master = new SplittableRandom(seed);
+            for (int b = 0; b < count; b++) {
+                int size = Math.min(PercolationStats.TRIALS_PER_BLOCK, trials - b * PercolationStats.TRIALS_PER_BLOCK);
+                this.blocks[b] = new PercolationStats.Block(n, size, master.split(), workspaces);
+            }
+        }
+
+        // rough cost of a block: opens ~ n^2 per trial
+        long cost(int block) {
+            return (long) this.n * this.n * Math.min(PercolationStats.TRIALS_PER_BLOCK,
+                                                     this.trials - block * PercolationStats.TRIALS_PER_BLOCK);
+        }
+
+        double standardError() {
+            return this.total.stddev() / Math.sqrt(this.total.count());
+        }
+    }
+
+    // a (size, block) pair to schedule
+    private static class Unit {
+        private final Size size;
+        private final int block;
+        private final long cost;
+
+        Unit(Size size, int block) {
+            this.size = size;
+            this.block = block;
+            this.cost = size.cost(block);
+        }
+    }
+
+    private final List<Size> sizes = new ArrayList<>();
+    private double pInfinity;
+    private double pInfinityError;
+    private double slope;
+    private int fitted;                                 // sizes used by the fit
+
+    /*
+     * runs trials[i] trials on an ns[i]-by-ns[i] grid for every i, on the pool, writing a csv
+     * line to out (if not null) as each size finishes
+     */
+    public PercolationSweep(int[] ns, int[] trials, long seed, ForkJoinPool pool, PrintWriter out) {
+        if (ns.length != trials.length) throw new IllegalArgumentException("one trial budget per grid size");
+        if (ns.length == 0) throw new IllegalArgumentException("no grid sizes");
+
+        SplittableRandom seeds = new SplittableRandom(seed);
+        PercolationStats.Workspaces workspaces = new PercolationStats.Workspaces();
+        List<Unit> units = new ArrayList<>();
+        for (int i = 0; i < ns.length; i++) {
+            if (ns[i] <= 0) throw new IllegalArgumentException("n should be greater than 0");
+            if (trials[i] < 2) throw new IllegalArgumentException("n = " + ns[i] + ": at least 2 trials are needed for a standard error");
+            Size size = new Size(ns[i], trials[i], seeds.nextLong(), workspaces);
+            this.sizes.add(size);
+            for (int b = 0; b < size.blocks.length; b++) units.add(new Unit(size, b));
+        }
+        units.sort(Comparator.comparingLong((Unit u) -> u.cost).reversed());
+
+        if (out != null) {
+            out.println("n,trials,seed,mean,stddev,confidenceLo,confidenceHi,cpuSeconds");
+            out.flush();
+        }
+
+        // external submissions are taken in FIFO order, so the largest units start first
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (Unit unit : units) tasks.add(pool.submit(() -> this.run(unit, out)));
+        try {
+            for (ForkJoinTask<?> task : tasks) task.join();
+        } finally {
+            workspaces.clear();
+        }
+
+        this.fit();
+    }
+
+    private void run(Unit unit, PrintWriter out) {
+        Size size = unit.size;
+        long start = System.nanoTime();
+        size.blocks[unit.block].run();
+        size.nanos[unit.block] = System.nanoTime() - start;
+        if (size.remaining.decrementAndGet() > 0) return;
+
+        // last block of this size: merge in block order, like PercolationStats
+        PercolationStats.Welford total = new PercolationStats.Welford();
+        long nanos = 0;
+        for (int b = 0; b < size.blocks.length; b++) {
+            total.merge(size.blocks[b].stats());
+            nanos += size.nanos[b];
+        }
+        size.total = total;
+
+        if (out != null) {
+            double halfWidth = PercolationStats.CONFIDENCE_LVL * size.standardError();
+            synchronized (out) {
+                out.printf("%d,%d,%d,%.8f,%.8f,%.8f,%.8f,%.3f%n", size.n, size.trials, size.seed, total.mean(),
+                           total.stddev(), total.mean() - halfWidth, total.mean() + halfWidth, nanos / 1e9);
+                out.flush();
+            }
+        }
+    }
+
+    /*
+     * weighted least squares of mean against n^(-3/4). A size whose standard error is 0
+     * (every trial gave the same threshold, e.g. n = 1) has no finite weight and is left out.
+     */
+    private void fit() {
+        double sw = 0;
+        double sx = 0;
+        double sy = 0;
+        double sxx = 0;
+        double sxy = 0;
+        for (Size size : this.sizes) {
+            double se = size.standardError();
+            if (!(se > 0) || Double.isInfinite(se)) continue;
+            double w = 1 / (se * se);
+            this.fitted++;
+            double x = Math.pow(size.n, EXPONENT);
+            double y = size.total.mean();
+            sw += w;
+            sx += w * x;
+            sy += w * y;
+            sxx += w * x * x;
+            sxy += w * x * y;
+        }
+        double det = sw * sxx - sx * sx;
+        this.slope = (sw * sxy - sx * sy) / det;
+        this.pInfinity = (sxx * sy - sx * sxy) / det;
+        this.pInfinityError = Math.sqrt(sxx / det);
+    }
+
+    // number of grid sizes the fit used, the others had a standard error of 0
+    public int fittedSizes() {
+        return this.fitted;
+    }
+
+    // extrapolated threshold of the infinite lattice (NaN with fewer than 2 distinct sizes fitted)
+    public double pInfinity() {
+        return this.pInfinity;
+    }
+
+    // standard error of pInfinity() from the fit
+    public double pInfinityError() {
+        return this.pInfinityError;
+    }
+
+    // a in p(n) = p_inf + a * n^(-3/4)
+    public double slope() {
+        return this.slope;
+    }
+
+    // sample mean of the threshold for the i-th grid size
+    public double mean(int i) {
+        return this.sizes.get(i).total.mean();
+    }
+
+    // test client
+    public static void main(String[] args) {
+        int threads = Integer.parseInt(args[0]);
+        long seed = Long.parseLong(args[1]);
+        int[] ns = new int[args.length - 3];
+        int[] trials = new int[args.length - 3];
+        for (int i = 3; i < args.length; i++) {
+            String[] pair = args[i].split(":");
+            ns[i - 3] = Integer.parseInt(pair[0]);
+            trials[i - 3] = Integer.parseInt(pair[1]);
+        }
+
+        PrintWriter out;
+        if (args[2].equals("-")) {
+            out = new PrintWriter(System.out, false, StandardCharsets.UTF_8);
+        } else {
+            try {
+                out = new PrintWriter(Files.newBufferedWriter(Paths.get(args[2]), StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        Stopwatch timer = new Stopwatch();
+        PercolationSweep sweep;
+        try {
+            sweep = new PercolationSweep(ns, trials, seed, pool, out);
+        } finally {
+            pool.shutdown();
+            out.flush();
+        }
+        if (!args[2].equals("-")) out.close();
+
+        StdOut.printf("%-20s= %s%n", "sizes", Arrays.toString(ns));
+        if (sweep.fittedSizes() < ns.length) {
+            StdOut.printf("%-20s= %d of %d (the rest have a standard error of 0)%n", "fitted sizes",
+                          sweep.fittedSizes(), ns.length);
+        }
+        StdOut.printf("%-20s= %.6f +- %.6f%n", "p_inf", sweep.pInfinity(), sweep.pInfinityError());
+        StdOut.printf("%-20s= %.4f%n", "a", sweep.slope());
+        StdOut.printf("%-20s= %.3f s%n", "elapsed", timer.elapsedTime());
+    }
+}
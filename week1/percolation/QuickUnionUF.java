@@ -23,6 +23,8 @@
  ***************************************************************/
 
 public class QuickUnionUF {
+    private static final UFMetrics METRICS = UFMetrics.register("QuickUnionUF");
+
     private int[] id;
 
     // Assigns IDs to each element in array
@@ -35,7 +37,13 @@ public class QuickUnionUF {
 
     // Chase parent pointers until root is reached
     private int root(int i) {
-        while (i != id[i]) i = id[i];
+        int links = 0;
+        while (i != id[i]) {
+            i = id[i];
+            links++;
+        }
+        // 2 array accesses per link followed, 1 for the final check
+        if (UFMetrics.ENABLED) METRICS.find(links, 2 * links + 1);
         return i;
     }
 
@@ -47,6 +55,7 @@ public class QuickUnionUF {
         int i = root(p);
         int j = root(q);
         id[i] = j;
+        if (UFMetrics.ENABLED) METRICS.union(i != j, 1);
     }
     
 
@@ -0,0 +1,212 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/******************************************************************************
+ *  Sequential reader / writer for checkpoint files, through a memory-mapped
+ *  FileChannel so that saving or loading an array is a bulk copy between
+ *  the heap and the page cache, without a stream or a per-element call.
+ *
+ *  Values are little-endian. Like MappedArray, the file is mapped in 1 GB
+ *  chunks; the chunk size is a multiple of 8, so as long as every array
+ *  starts at a multiple of its element size no element straddles two
+ *  chunks (put/get check this).
+ *
+ *  A file being written goes to "<name>.tmp" and only replaces the real
+ *  file in commit(), after it has been forced to disk, so a crash while
+ *  saving leaves the previous checkpoint intact.
+ *****************************************************************************/
+
+public class SnapshotFile implements Closeable {
+    private static final int CHUNK_SHIFT = 30;                  // 1 GB per mapped chunk
+    private static final long CHUNK_SIZE = 1L << CHUNK_SHIFT;
+
+    private final FileChannel channel;
+    private final FileChannel.MapMode mode;
+    private final long length;              // file size in bytes
+    private final Path file;                // final name (writing only)
+    private final Path temporary;           // where the file is written until commit()
+
+    private long position;                  // cursor, in bytes
+    private long chunkIndex = -1;
+    private MappedByteBuffer chunk;
+
+    private SnapshotFile(FileChannel channel, FileChannel.MapMode mode, long length, Path file, Path temporary) {
+        this.channel = channel;
+        this.mode = mode;
+        this.length = length;
+        this.file = file;
+        this.temporary = temporary;
+    }
+
+    // starts writing a file of exactly the given size
+    public static SnapshotFile create(Path file, long bytes) {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                                                   StandardOpenOption.READ, StandardOpenOption.WRITE);
+            return new SnapshotFile(channel, FileChannel.MapMode.READ_WRITE, bytes, file, temporary);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // opens a committed file for reading
+    public static SnapshotFile open(Path file) {
+        try {
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+            return new SnapshotFile(channel, FileChannel.MapMode.READ_ONLY, channel.size(), null, null);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // file size in bytes
+    public long length() {
+        return this.length;
+    }
+
+    // the mapped chunk holding the cursor, positioned at it, with at least size bytes left
+    private MappedByteBuffer at(int size) {
+        if (this.position % size != 0) throw new IllegalStateException("position " + this.position + " is not aligned to " + size);
+        if (this.position + size > this.length) throw new IllegalArgumentException("snapshot too short");
+        long index = this.position >>> CHUNK_SHIFT;
+        if (index != this.chunkIndex) {
+            try {
+                if (this.chunk != null && this.mode == FileChannel.MapMode.READ_WRITE) this.chunk.force();
+                long offset = index << CHUNK_SHIFT;
+                this.chunk = this.channel.map(this.mode, offset, Math.min(CHUNK_SIZE, this.length - offset));
+                this.chunk.order(ByteOrder.LITTLE_ENDIAN);
+                this.chunkIndex = index;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        this.chunk.position((int) (this.position - (index << CHUNK_SHIFT)));
+        return this.chunk;
+    }
+
+    // elements of the given size that fit in the rest of the current chunk
+    private int room(int size) {
+        return (int) ((CHUNK_SIZE - (this.position & (CHUNK_SIZE - 1))) / size);
+    }
+
+    public void putInt(int value) {
+        this.at(4).putInt(value);
+        this.position += 4;
+    }
+
+    public void putLong(long value) {
+        this.at(8).putLong(value);
+        this.position += 8;
+    }
+
+    public void putDouble(double value) {
+        this.putLong(Double.doubleToRawLongBits(value));
+    }
+
+    public void put(long[] values) {
+        for (int i = 0; i < values.length; ) {
+            int count = Math.min(values.length - i, this.room(8));
+            this.at(8).asLongBuffer().put(values, i, count);
+            this.position += 8L * count;
+            i += count;
+        }
+    }
+
+    public void put(int[] values) {
+        for (int i = 0; i < values.length; ) {
+            int count = Math.min(values.length - i, this.room(4));
+            this.at(4).asIntBuffer().put(values, i, count);
+            this.position += 4L * count;
+            i += count;
+        }
+    }
+
+    public void put(byte[] values) {
+        for (int i = 0; i < values.length; ) {
+            int count = Math.min(values.length - i, this.room(1));
+            this.at(1).put(values, i, count);
+            this.position += count;
+            i += count;
+        }
+    }
+
+    public int getInt() {
+        int value = this.at(4).getInt();
+        this.position += 4;
+        return value;
+    }
+
+    public long getLong() {
+        long value = this.at(8).getLong();
+        this.position += 8;
+        return value;
+    }
+
+    public double getDouble() {
+        return Double.longBitsToDouble(this.getLong());
+    }
+
+    // fills the whole array
+    public void get(long[] values) {
+        for (int i = 0; i < values.length; ) {
+            int count = Math.min(values.length - i, this.room(8));
+            this.at(8).asLongBuffer().get(values, i, count);
+            this.position += 8L * count;
+            i += count;
+        }
+    }
+
+    public void get(int[] values) {
+        for (int i = 0; i < values.length; ) {
+            int count = Math.min(values.length - i, this.room(4));
+            this.at(4).asIntBuffer().get(values, i, count);
+            this.position += 4L * count;
+            i += count;
+        }
+    }
+
+    public void get(byte[] values) {
+        for (int i = 0; i < values.length; ) {
+            int count = Math.min(values.length - i, this.room(1));
+            this.at(1).get(values, i, count);
+            this.position += count;
+            i += count;
+        }
+    }
+
+    // forces a written file to disk and atomically puts it in place of the previous one
+    public void commit() {
+        if (this.mode != FileChannel.MapMode.READ_WRITE) throw new IllegalStateException("not opened for writing");
+        if (this.position != this.length) throw new IllegalStateException(this.position + " of " + this.length + " bytes written");
+        try {
+            if (this.chunk != null) this.chunk.force();
+            this.channel.force(true);
+            this.channel.close();
+            Files.move(this.temporary, this.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // closes the file, an uncommitted write is thrown away
+    @Override
+    public void close() {
+        try {
+            if (this.channel.isOpen()) {
+                this.channel.close();
+                if (this.temporary != null) Files.deleteIfExists(this.temporary);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,443 @@
+import edu.princeton.cs.algs4.StdOut;
+import edu.princeton.cs.algs4.Stopwatch;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/******************************************************************************
+ *  Compilation:  javac-algs4 StripPercolation.java
+ *  Execution:    java-algs4 StripPercolation n strips p seed [threads]
+ *                java-algs4 StripPercolation worker n rowFrom rowTo p seed file
+ *                java-algs4 StripPercolation coordinator file...
+ *
+ *  Percolation on an n-by-n grid cut into horizontal strips, each labelled
+ *  on its own, so a grid can be spread over several threads or JVMs.
+ *
+ *  Every site is open with probability p. The sites of a row are drawn
+ *  from a generator seeded by (seed, row) alone, so any worker can rebuild
+ *  its strip from (n, rowFrom, rowTo, p, seed) and the grid is the same no
+ *  matter how it is cut.
+ *
+ *  A worker labels its strip with a CompactUF and reduces it to a Boundary:
+ *  the clusters that reach the top or bottom row of the strip get labels
+ *  0, 1, 2, ..., and only the labels of those two rows are kept. On disk:
+ *
+ *      MAGIC n rowFrom rowTo labelCount top[0..n-1] bottom[0..n-1]
+ *
+ *  all 4 byte little-endian ints, -1 for a blocked site; 8n + 20 bytes per
+ *  strip, whatever its height.
+ *
+ *  The coordinator (Merge) unites the bottom labels of each strip with the
+ *  top labels of the next one in a union-find over all labels, which costs
+ *  O(n * strips). A label is full if it is connected to a top label of the
+ *  first strip; the grid percolates if some component also holds a bottom
+ *  label of the last strip. There are no virtual sites, so no backwash.
+ *
+ *  In thread mode the strips stay in memory and isFull(row, col) looks up
+ *  the label of the site's cluster in its strip.
+ *
+ *  % java-algs4 StripPercolation worker 1000 0 500 0.6 1 s0.bin
+ *  % java-algs4 StripPercolation worker 1000 500 1000 0.6 1 s1.bin
+ *  % java-algs4 StripPercolation coordinator s0.bin s1.bin
+ *****************************************************************************/
+
+public class StripPercolation {
+    public static final int MAGIC = 0x31505453;     // "STP1" read little-endian
+
+    private final int n;
+    private final Strip[] strips;
+    private final Merge merge;
+
+    // opens every site of the n-by-n grid with probability p, labelling the strips on the pool
+    public StripPercolation(int n, int strips, double p, long seed, ExecutorService pool) {
+        if (n <= 0) throw new IllegalArgumentException("n must be an integer greater than 0");
+        if (strips <= 0 || strips > n) throw new IllegalArgumentException("strips must be between 1 and " + n);
+
+        this.n = n;
+        this.strips = new Strip[strips];
+        List<Future<Strip>> labelled = new ArrayList<>();
+        for (int s = 0; s < strips; s++) {
+            int rowFrom = (int) ((long) n * s / strips);
+            int rowTo = (int) ((long) n * (s + 1) / strips);
+            labelled.add(pool.submit(() -> new Strip(n, rowFrom, rowTo, p, seed)));
+        }
+
+        List<Boundary> boundaries = new ArrayList<>();
+        try {
+            for (int s = 0; s < strips; s++) {
+                this.strips[s] = labelled.get(s).get();
+                boundaries.add(this.strips[s].boundary);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+        this.merge = new Merge(boundaries);
+    }
+
+    // does the system percolate?
+    public boolean percolates() {
+        return this.merge.percolates();
+    }
+
+    // is the site (row, col) open? (1-based, as in Percolation)
+    public boolean isOpen(int row, int col) {
+        validate(row, col);
+        return this.stripOf(row - 1).isOpen(row - 1, col - 1);
+    }
+
+    // is the site (row, col) full?
+    public boolean isFull(int row, int col) {
+        validate(row, col);
+        int s = this.indexOf(row - 1);
+        int label = this.strips[s].labelOf(row - 1, col - 1);
+        return label >= 0 && this.merge.isFull(s, label);
+    }
+
+    // returns the number of open sites
+    public long numberOfOpenSites() {
+        long open = 0;
+        for (Strip strip : this.strips) open += strip.openSites;
+        return open;
+    }
+
+    private void validate(int row, int col) {
+        if (row <= 0 || row > this.n) {
+            throw new IllegalArgumentException("index " + row + " is not between 1 and " + this.n);
+        }
+        if (col <= 0 || col > this.n) {
+            throw new IllegalArgumentException("index " + col + " is not between 1 and " + this.n);
+        }
+    }
+
+    private Strip stripOf(int row) {
+        return this.strips[this.indexOf(row)];
+    }
+
+    // strip holding the (0-based) row, by binary search on rowFrom
+    private int indexOf(int row) {
+        int lo = 0;
+        int hi = this.strips.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (this.strips[mid].boundary.rowFrom <= row) lo = mid;
+            else hi = mid - 1;
+        }
+        return lo;
+    }
+
+    // open sites of the (0-based) row, the same draw for every way of cutting the grid
+    private static boolean[] rowSites(int n, int row, double p, long seed) {
+        SplittableRandom rng = new SplittableRandom(mix(seed + 0x9E3779B97F4A7C15L * (row + 1)));
+        boolean[] open = new boolean[n];
+        for (int col = 0; col < n; col++) open[col] = rng.nextDouble() < p;
+        return open;
+    }
+
+    // murmur3 64-bit finalizer, so nearby rows get unrelated generators
+    private static long mix(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return z ^ (z >>> 33);
+    }
+
+    /*
+     * What a worker sends to the coordinator: the cluster labels of the top and
+     * bottom row of its strip, -1 for blocked sites.
+     */
+    public static class Boundary {
+        private final int n;
+        private final int rowFrom;          // first row of the strip (0-based)
+        private final int rowTo;            // one past the last row
+        private final int labelCount;       // labels are 0 to labelCount - 1
+        private final int[] top;
+        private final int[] bottom;
+
+        Boundary(int n, int rowFrom, int rowTo, int labelCount, int[] top, int[] bottom) {
+            this.n = n;
+            this.rowFrom = rowFrom;
+            this.rowTo = rowTo;
+            this.labelCount = labelCount;
+            this.top = top;
+            this.bottom = bottom;
+        }
+
+        // labels the strip of rows [rowFrom, rowTo) and keeps its boundary only
+        public static Boundary label(int n, int rowFrom, int rowTo, double p, long seed) {
+            validateRows(n, rowFrom, rowTo);
+            return new Strip(n, rowFrom, rowTo, p, seed).boundary;
+        }
+
+        // a strip is a non-empty range of rows of the n-by-n grid, 0 <= rowFrom < rowTo <= n
+        private static void validateRows(int n, int rowFrom, int rowTo) {
+            if (n <= 0) throw new IllegalArgumentException("n must be an integer greater than 0");
+            if (rowFrom < 0 || rowFrom >= rowTo || rowTo > n) {
+                throw new IllegalArgumentException("rows " + rowFrom + " to " + rowTo + " are not a strip of 0 to " + n);
+            }
+        }
+
+        public void write(WritableByteChannel out) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(20 + 8 * this.n).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(MAGIC).putInt(this.n).putInt(this.rowFrom).putInt(this.rowTo).putInt(this.labelCount);
+            buffer.asIntBuffer().put(this.top).put(this.bottom);
+            buffer.position(buffer.capacity()).flip();
+            while (buffer.hasRemaining()) out.write(buffer);
+        }
+
+        public static Boundary read(ReadableByteChannel in) throws IOException {
+            ByteBuffer head = fill(in, ByteBuffer.allocate(20).order(ByteOrder.LITTLE_ENDIAN));
+            if (head.getInt() != MAGIC) throw new IOException("not a strip boundary");
+            int n = head.getInt();
+            int rowFrom = head.getInt();
+            int rowTo = head.getInt();
+            int labelCount = head.getInt();
+            validateRows(n, rowFrom, rowTo);
+            if (n > (Integer.MAX_VALUE - 20) / 8) throw new IllegalArgumentException("n = " + n + " is too large");
+            if (labelCount < 0 || labelCount > 2 * n) throw new IllegalArgumentException("bad label count " + labelCount);
+
+            ByteBuffer body = fill(in, ByteBuffer.allocate(8 * n).order(ByteOrder.LITTLE_ENDIAN));
+            int[] top = new int[n];
+            int[] bottom = new int[n];
+            body.asIntBuffer().get(top).get(bottom);
+            // -1 marks a blocked site, anything else must be a label
+            for (int col = 0; col < n; col++) {
+                if (top[col] < -1 || top[col] >= labelCount || bottom[col] < -1 || bottom[col] >= labelCount) {
+                    throw new IllegalArgumentException("label out of range in column " + col);
+                }
+            }
+            return new Boundary(n, rowFrom, rowTo, labelCount, top, bottom);
+        }
+
+        private static ByteBuffer fill(ReadableByteChannel in, ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                if (in.read(buffer) < 0) throw new IOException("truncated boundary");
+            }
+            buffer.flip();
+            return buffer;
+        }
+    }
+
+    /*
+     * Coordinator: joins the boundaries of consecutive strips, which must cover
+     * rows 0 to n - 1 in order.
+     */
+    public static class Merge {
+        private final int[] offset;         // label l of strip s is offset[s] + l in the union-find
+        private final CompactUF labels;
+        private final boolean[] full;       // full[root] = component holds a top label of the first strip
+        private final boolean percolates;
+
+        public Merge(List<Boundary> boundaries) {
+            int strips = boundaries.size();
+            if (strips == 0) throw new IllegalArgumentException("no strips");
+            int n = boundaries.get(0).n;
+            if (boundaries.get(0).rowFrom != 0) throw new IllegalArgumentException("first strip does not start at row 0");
+            if (boundaries.get(strips - 1).rowTo != n) throw new IllegalArgumentException("last strip does not end at row " + n);
+
+            this.offset = new int[strips];
+            long total = 0;
+            for (int s = 0; s < strips; s++) {
+                Boundary b = boundaries.get(s);
+                if (b.n != n) throw new IllegalArgumentException("strip " + s + " has n = " + b.n + ", not " + n);
+                if (s > 0 && b.rowFrom != boundaries.get(s - 1).rowTo) {
+                    throw new IllegalArgumentException("strip " + s + " starts at row " + b.rowFrom
+                                                       + ", not " + boundaries.get(s - 1).rowTo);
+                }
+                this.offset[s] = (int) total;
+                total += b.labelCount;
+            }
+            if (total > Integer.MAX_VALUE) throw new IllegalArgumentException("too many labels");
+
+            this.labels = new CompactUF((int) total);
+            for (int s = 1; s < strips; s++) {
+                int[] above = boundaries.get(s - 1).bottom;
+                int[] below = boundaries.get(s).top;
+                for (int col = 0; col < n; col++) {
+                    if (above[col] >= 0 && below[col] >= 0) {
+                        this.labels.union(this.offset[s - 1] + above[col], this.offset[s] + below[col]);
+                    }
+                }
+            }
+
+            this.full = new boolean[(int) total];
+            for (int label : boundaries.get(0).top) {
+                if (label >= 0) this.full[this.labels.find(label)] = true;
+            }
+            boolean percolates = false;
+            for (int label : boundaries.get(strips - 1).bottom) {
+                if (label >= 0 && this.full[this.labels.find(this.offset[strips - 1] + label)]) percolates = true;
+            }
+            this.percolates = percolates;
+        }
+
+        public boolean percolates() {
+            return this.percolates;
+        }
+
+        // is the cluster with this label in strip s connected to the top row?
+        public boolean isFull(int strip, int label) {
+            return this.full[this.labels.find(this.offset[strip] + label)];
+        }
+
+        // number of labels of strip s that are full
+        public int fullLabels(int strip, Boundary boundary) {
+            int count = 0;
+            for (int label = 0; label < boundary.labelCount; label++) if (this.isFull(strip, label)) count++;
+            return count;
+        }
+    }
+
+    // one labelled strip, kept in memory in thread mode
+    private static class Strip {
+        private final int n;
+        private final int rowFrom;
+        private final long[] open;          // bit (row - rowFrom) * n + col
+        private final CompactUF sites;
+        private final int[] labelledRoots;  // sorted roots of the boundary clusters, label = position
+        private final Boundary boundary;
+        private long openSites;
+
+        Strip(int n, int rowFrom, int rowTo, double p, long seed) {
+            if ((long) (rowTo - rowFrom) * n > Integer.MAX_VALUE) throw new IllegalArgumentException("strip too large");
+            this.n = n;
+            this.rowFrom = rowFrom;
+            int size = (rowTo - rowFrom) * n;
+            this.open = new long[(size + 63) >>> 6];
+            this.sites = new CompactUF(size);
+
+            for (int row = rowFrom; row < rowTo; row++) {
+                boolean[] sites = rowSites(n, row, p, seed);
+                for (int col = 0; col < n; col++) {
+                    if (!sites[col]) continue;
+                    int i = (row - rowFrom) * n + col;
+                    this.open[i >>> 6] |= 1L << i;
+                    this.openSites++;
+                    if (col > 0 && this.isOpen(i - 1)) this.sites.union(i, i - 1);
+                    if (row > rowFrom && this.isOpen(i - n)) this.sites.union(i, i - n);
+                }
+            }
+
+            // label the clusters on the top and bottom rows, in increasing root order
+            int[] roots = new int[2 * n];
+            int count = 0;
+            for (int col = 0; col < n; col++) {
+                if (this.isOpen(col)) roots[count++] = this.sites.find(col);
+                if (this.isOpen(size - n + col)) roots[count++] = this.sites.find(size - n + col);
+            }
+            Arrays.sort(roots, 0, count);
+            int distinct = 0;
+            for (int i = 0; i < count; i++) {
+                if (distinct == 0 || roots[i] != roots[distinct - 1]) roots[distinct++] = roots[i];
+            }
+            this.labelledRoots = Arrays.copyOf(roots, distinct);
+
+            int[] top = new int[n];
+            int[] bottom = new int[n];
+            for (int col = 0; col < n; col++) {
+                top[col] = this.labelOf(rowFrom, col);
+                bottom[col] = this.labelOf(rowTo - 1, col);
+            }
+            this.boundary = new Boundary(n, rowFrom, rowTo, distinct, top, bottom);
+        }
+
+        private boolean isOpen(int i) {
+            return (this.open[i >>> 6] & (1L << i)) != 0;
+        }
+
+        boolean isOpen(int row, int col) {
+            return this.isOpen((row - this.rowFrom) * this.n + col);
+        }
+
+        // label of the cluster of (row, col), -1 if blocked or not on the boundary
+        int labelOf(int row, int col) {
+            int i = (row - this.rowFrom) * this.n + col;
+            if (!this.isOpen(i)) return -1;
+            int label = Arrays.binarySearch(this.labelledRoots, this.sites.find(i));
+            return label >= 0 ? label : -1;
+        }
+    }
+
+    // test client
+    public static void main(String[] args) throws IOException {
+        if (args[0].equals("worker")) {
+            int n = Integer.parseInt(args[1]);
+            int rowFrom = Integer.parseInt(args[2]);
+            int rowTo = Integer.parseInt(args[3]);
+            double p = Double.parseDouble(args[4]);
+            long seed = Long.parseLong(args[5]);
+            Boundary boundary = Boundary.label(n, rowFrom, rowTo, p, seed);
+            try (FileChannel out = FileChannel.open(Paths.get(args[6]), StandardOpenOption.CREATE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                boundary.write(out);
+            }
+            StdOut.printf("rows %d to %d: %d boundary labels%n", rowFrom, rowTo, boundary.labelCount);
+            return;
+        }
+
+        if (args[0].equals("coordinator")) {
+            List<Boundary> boundaries = new ArrayList<>();
+            for (int i = 1; i < args.length; i++) {
+                try (FileChannel in = FileChannel.open(Paths.get(args[i]), StandardOpenOption.READ)) {
+                    boundaries.add(Boundary.read(in));
+                }
+            }
+            Merge merge = new Merge(boundaries);
+            for (int s = 0; s < boundaries.size(); s++) {
+                Boundary b = boundaries.get(s);
+                StdOut.printf("rows %d to %d: %d of %d labels full%n", b.rowFrom, b.rowTo,
+                              merge.fullLabels(s, b), b.labelCount);
+            }
+            StdOut.printf("%-20s= %b%n", "percolates", merge.percolates());
+            return;
+        }
+
+        int n = Integer.parseInt(args[0]);
+        int strips = Integer.parseInt(args[1]);
+        double p = Double.parseDouble(args[2]);
+        long seed = Long.parseLong(args[3]);
+        int threads = args.length > 4 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        Stopwatch timer = new Stopwatch();
+        StripPercolation grid = new StripPercolation(n, strips, p, seed, pool);
+        double seconds = timer.elapsedTime();
+        pool.shutdown();
+        StdOut.printf("%-20s= %d%n", "open sites", grid.numberOfOpenSites());
+        StdOut.printf("%-20s= %b%n", "percolates", grid.percolates());
+        StdOut.printf("%-20s= %.3f s%n", "time", seconds);
+
+        // small grids: the same sites opened in Percolation must agree everywhere
+        if ((long) n * n <= 4_000_000) {
+            Percolation check = new Percolation(n);
+            for (int row = 0; row < n; row++) {
+                boolean[] sites = rowSites(n, row, p, seed);
+                for (int col = 0; col < n; col++) if (sites[col]) check.open(row + 1, col + 1);
+            }
+            if (check.percolates() != grid.percolates()) throw new IllegalStateException("percolates() differs");
+            for (int row = 1; row <= n; row++) {
+                for (int col = 1; col <= n; col++) {
+                    if (check.isOpen(row, col) != grid.isOpen(row, col) || check.isFull(row, col) != grid.isFull(row, col)) {
+                        throw new IllegalStateException("site (" + row + ", " + col + ") differs");
+                    }
+                }
+            }
+            StdOut.println("agrees with Percolation");
+        }
+    }
+}
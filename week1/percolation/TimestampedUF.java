@@ -0,0 +1,229 @@
+import edu.princeton.cs.algs4.StdOut;
+import edu.princeton.cs.algs4.StdRandom;
+
+import java.util.Arrays;
+
+/***************************************************************
+ * Refer to the notes on WeightedQuickUnionUF.java.
+ * Same weighted trees (union by rank), but every link remembers
+ * WHEN it was made, so questions about the past can be answered
+ * after the fact without replaying anything.
+ *
+ * Path compression is left out on purpose: it would rewrite
+ * parent pointers and lose the history. Union by rank alone
+ * keeps the trees O(log N) high.
+ *
+ * Each union(p, q, time) that merges two sets links one root
+ * under the other and stores linkTime[child] = time. Times must
+ * not decrease from one union to the next. Then:
+ *
+ * connectedSince(p, q): p and q became connected when the last
+ * link on the tree path between them was made, i.e. the largest
+ * linkTime on the two paths up to their lowest common ancestor.
+ * Both paths are O(log N) long.
+ *
+ * connectionTimes(p): the time every element became connected to
+ * p, for all N elements in one O(N) pass. An element's time is
+ * the later of its own link time and its parent's time, so each
+ * value is computed once and reused by all of its descendants.
+ ***************************************************************/
+
+public class TimestampedUF {
+    private static final UFMetrics METRICS = UFMetrics.register("TimestampedUF");
+
+    // marks "never connected" (and the link time of a root)
+    public static final int NEVER = Integer.MAX_VALUE;
+
+    private final int[] parent;     // parent[i] = parent of i
+    private final byte[] rank;      // rank[i] = rank of subtree rooted at i
+    private final int[] linkTime;   // linkTime[i] = time i was linked under parent[i], NEVER for roots
+    private int count;              // number of components
+    private int lastTime;           // time of the last union, times may not go back
+
+    // n elements (0 through n-1), each in its own set
+    public TimestampedUF(int n) {
+        if (n < 0) throw new IllegalArgumentException("n must not be negative");
+        count = n;
+        parent = new int[n];
+        rank = new byte[n];
+        linkTime = new int[n];
+        for (int i = 0; i < n; i++) parent[i] = i;
+        Arrays.fill(linkTime, NEVER);
+        lastTime = Integer.MIN_VALUE;
+    }
+
+    // returns the number of sets
+    public int count() {
+        return count;
+    }
+
+    // returns the canonical element (root) of the set containing p
+    public int find(int p) {
+        validate(p);
+        int links = 0;
+        while (p != parent[p]) {
+            p = parent[p];
+            links++;
+        }
+        // 2 array accesses per link followed, 1 for the final check
+        if (UFMetrics.ENABLED) METRICS.find(links, 2 * links + 1);
+        return p;
+    }
+
+    public boolean connected(int p, int q) {
+        return find(p) == find(q);
+    }
+
+    // validate that p is a valid index
+    private void validate(int p) {
+        int n = parent.length;
+        if (p < 0 || p >= n) {
+            throw new IllegalArgumentException("index " + p + " is not between 0 and " + (n - 1));
+        }
+    }
+
+    // merges the set containing p with the set containing q at the given time
+    public void union(int p, int q, int time) {
+        if (time < lastTime) throw new IllegalArgumentException("time " + time + " is before " + lastTime);
+        if (time == NEVER) throw new IllegalArgumentException("time must be less than " + NEVER);
+        lastTime = time;
+
+        int rootP = find(p);
+        int rootQ = find(q);
+        if (rootP == rootQ) {
+            if (UFMetrics.ENABLED) METRICS.union(false, 0);
+            return;
+        }
+
+        if (rank[rootP] < rank[rootQ]) {
+            int swap = rootP;
+            rootP = rootQ;
+            rootQ = swap;
+        }
+        parent[rootQ] = rootP;
+        linkTime[rootQ] = time;
+        // rank comparisons and the parent and linkTime writes, plus the rank update on a tie
+        int accesses = 6;
+        if (rank[rootP] == rank[rootQ]) {
+            rank[rootP]++;
+            accesses += 2;
+        }
+        count--;
+        if (UFMetrics.ENABLED) METRICS.union(true, accesses);
+    }
+
+    // the time p and q first became connected, NEVER if they aren't (Integer.MIN_VALUE if p == q)
+    public int connectedSince(int p, int q) {
+        validate(p);
+        validate(q);
+        int latest = Integer.MIN_VALUE;
+        // climb from the lower node until both meet; a parent always has a higher rank
+        while (p != q) {
+            if (rank[p] < rank[q] || (rank[p] == rank[q] && parent[p] != p)) {
+                if (parent[p] == p) return NEVER;
+                latest = Math.max(latest, linkTime[p]);
+                p = parent[p];
+            } else {
+                if (parent[q] == q) return NEVER;
+                latest = Math.max(latest, linkTime[q]);
+                q = parent[q];
+            }
+        }
+        return latest;
+    }
+
+    /*
+     * times[i] = time element i became connected to p (NEVER if it still isn't),
+     * with times[p] = Integer.MIN_VALUE, for all elements in one pass
+     */
+    public int[] connectionTimes(int p) {
+        validate(p);
+        int n = parent.length;
+        int[] times = new int[n];
+        boolean[] known = new boolean[n];
+
+        // p and its ancestors: an ancestor joined p's set at the latest link below it
+        int latest = Integer.MIN_VALUE;
+        for (int a = p; ; a = parent[a]) {
+            times[a] = latest;
+            known[a] = true;
+            if (parent[a] == a) break;
+            latest = Math.max(latest, linkTime[a]);
+        }
+        int root = find(p);
+
+        // everything else: later of its own link and its parent's time
+        int[] path = new int[64];
+        for (int i = 0; i < n; i++) {
+            int length = 0;
+            int a = i;
+            while (!known[a] && parent[a] != a) {
+                if (length == path.length) path = Arrays.copyOf(path, 2 * length);
+                path[length++] = a;
+                a = parent[a];
+            }
+            // a is known, or a root of another set (not connected, ever)
+            int time = known[a] ? times[a] : NEVER;
+            if (!known[a]) {
+                times[a] = NEVER;
+                known[a] = true;
+            }
+            while (length > 0) {
+                int b = path[--length];
+                time = time == NEVER ? NEVER : Math.max(time, linkTime[b]);
+                times[b] = time;
+                known[b] = true;
+            }
+        }
+        assert times[root] != NEVER;
+        return times;
+    }
+
+    /**
+     * Test client: runs a random Percolation, recording each step's unions with the
+     * step number as time, then reads every site's fill time from the history and
+     * checks it against isFull() replayed step by step.
+     *
+     * @param args n (grid size)
+     */
+    public static void main(String[] args) {
+        int n = Integer.parseInt(args[0]);
+        int top = n * n;        // virtual top site, sites are row-major from 0
+        int[] order = StdRandom.permutation(n * n);
+
+        TimestampedUF uf = new TimestampedUF(n * n + 1);
+        boolean[] open = new boolean[n * n];
+        for (int step = 0; step < order.length; step++) {
+            int site = order[step];
+            int row = site / n;
+            int col = site % n;
+            open[site] = true;
+            if (row == 0) uf.union(site, top, step);
+            if (row > 0 && open[site - n]) uf.union(site, site - n, step);
+            if (row < n - 1 && open[site + n]) uf.union(site, site + n, step);
+            if (col > 0 && open[site - 1]) uf.union(site, site - 1, step);
+            if (col < n - 1 && open[site + 1]) uf.union(site, site + 1, step);
+        }
+        int[] fillTime = uf.connectionTimes(top);
+
+        // replay with Percolation, the first step where isFull() holds must match
+        Percolation perc = new Percolation(n);
+        int[] replayed = new int[n * n];
+        Arrays.fill(replayed, NEVER);
+        for (int step = 0; step < order.length; step++) {
+            perc.open(order[step]);
+            for (int i = 0; i < n * n; i++) {
+                if (replayed[i] == NEVER && perc.isFull(i / n + 1, i % n + 1)) replayed[i] = step;
+            }
+        }
+        for (int i = 0; i < n * n; i++) {
+            if (fillTime[i] != replayed[i]) throw new IllegalStateException("site " + i + ": " + fillTime[i] + " != " + replayed[i]);
+            if (uf.connectedSince(i, top) != fillTime[i]) throw new IllegalStateException("connectedSince differs at " + i);
+        }
+
+        for (int row = 0; row < n; row++) {
+            for (int col = 0; col < n; col++) StdOut.printf("%6d", fillTime[row * n + col]);
+            StdOut.println();
+        }
+    }
+}
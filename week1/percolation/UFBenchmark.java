@@ -0,0 +1,339 @@
+import edu.princeton.cs.algs4.StdOut;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/******************************************************************************
+ *  Compilation:  javac-algs4 UFBenchmark.java
+ *  Execution:    java-algs4 UFBenchmark [maxLogN] [percolationN]
+ *                java-algs4 UFBenchmark layout n1 n2 ...
+ *                java-algs4 UFBenchmark readheavy n
+ *
+ *  Reproducible micro-benchmarks for the union-find classes and Percolation.
+ *
+ *  union-find   every implementation x N = 2^10 .. 2^maxLogN x pattern:
+ *                 random    uniformly random pairs, then as many connected() calls
+ *                 chain     union(i, i + 1) for all i, then connected() on the deepest
+ *                           elements (worst case for unweighted QuickUnion)
+ *                 grid      the unions Percolation does: grid neighbours in random order
+ *               QuickUnionUF is quadratic on the chain, so it stops at 2^14.
+ *  percolation  open() throughput of Percolation, LeanPercolation, CompactPercolation
+ *  stats        end-to-end PercolationStats trials per second
+ *  readheavy    QuickFindUF vs WeightedQuickUnionUF on mixes of 1 union to 1, 10,
+ *               100 and 1000 connected() calls on random pairs, over the whole
+ *               course of the unions (so finds also see the trees while they grow)
+ *  layout       LeanPercolation open() throughput, row-major vs Z-order tiles, for
+ *               each given n (e.g. 1000 8000 32000; the last needs ~15 GB of heap).
+ *               Cache misses can't be read from inside the JVM, run this mode under
+ *                 perf stat -e LLC-loads,LLC-load-misses java-algs4 UFBenchmark layout n
+ *               once per n to get last-level cache misses alongside the throughput.
+ *
+ *  Allocation per op includes building the structure itself (e.g. 8 B per
+ *  element for parent[] + size[]), so anything above that figure is garbage
+ *  created in the hot loop.
+ *
+ *  Each benchmark is run for WARMUP untimed iterations (for the JIT) and then
+ *  MEASURED timed iterations; the median is reported, together with the
+ *  bytes allocated per operation and the GC count/time during the timed runs.
+ *  Fixed seeds make the inputs identical from run to run, so numbers from two
+ *  builds can be compared directly to catch regressions.
+ *
+ *  % java-algs4 UFBenchmark 14 300
+ *  benchmark                                               ops/sec   alloc B/op     gc    gc ms
+ *  uf random  QuickFindUF                     1024          836664          4.1      0        0
+ *  ...
+ *  uf grid    WeightedQuickUnionUF           16384        24177326          4.0      0        0
+ *  ...
+ *  open   LeanPercolation              n=300               4891402          9.0      0        0
+ *  ...
+ *  stats  trials  n=256                                        213    1147123.6      7        3
+ *****************************************************************************/
+
+public class UFBenchmark {
+    private static final int WARMUP = 5;
+    private static final int MEASURED = 10;
+    private static final int QUADRATIC_MAX_LOG_N = 14;
+
+    // common face of the union-find classes, they share no interface of their own
+    private interface UF {
+        void union(int p, int q);
+
+        boolean connected(int p, int q);
+    }
+
+    // test client
+    public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("layout")) {
+            for (int i = 1; i < args.length; i++) benchLayout(Integer.parseInt(args[i]));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("readheavy")) {
+            StdOut.printf("%-48s %14s %12s %6s %8s%n", "benchmark", "ops/sec", "alloc B/op", "gc", "gc ms");
+            benchReadHeavy(Integer.parseInt(args[1]));
+            return;
+        }
+
+        int maxLogN = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        int percolationN = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+
+        StdOut.printf("%-48s %14s %12s %6s %8s%n", "benchmark", "ops/sec", "alloc B/op", "gc", "gc ms");
+
+        for (int logN = 10; logN <= maxLogN; logN += 2) {
+            int n = 1 << logN;
+            for (String pattern : new String[] { "random", "chain", "grid" }) {
+                int[][] pairs = pairs(pattern, n);
+                benchUF("QuickFindUF", pattern, n, pairs, size -> {
+                    QuickFindUF uf = new QuickFindUF(size);
+                    return wrap(uf::union, uf::connected);
+                });
+                if (logN <= QUADRATIC_MAX_LOG_N) {
+                    benchUF("QuickUnionUF", pattern, n, pairs, size -> {
+                        QuickUnionUF uf = new QuickUnionUF(size);
+                        return wrap(uf::union, uf::connected);
+                    });
+                }
+                benchUF("WeightedQuickUnionUF", pattern, n, pairs, size -> {
+                    WeightedQuickUnionUF uf = new WeightedQuickUnionUF(size);
+                    return wrap(uf::union, uf::connected);
+                });
+                benchUF("algs4.WeightedQuickUnionUF", pattern, n, pairs, size -> {
+                    edu.princeton.cs.algs4.WeightedQuickUnionUF uf = new edu.princeton.cs.algs4.WeightedQuickUnionUF(size);
+                    // connected() is deprecated in algs4, compare roots instead
+                    return wrap(uf::union, (p, q) -> uf.find(p) == uf.find(q));
+                });
+                benchUF("CompactUF", pattern, n, pairs, size -> {
+                    CompactUF uf = new CompactUF(size);
+                    return wrap(uf::union, uf::connected);
+                });
+                benchUF("ConcurrentUF", pattern, n, pairs, size -> {
+                    ConcurrentUF uf = new ConcurrentUF(size);
+                    return wrap(uf::union, uf::connected);
+                });
+            }
+        }
+
+        int[] order = new int[percolationN * percolationN];
+        for (int k = 0; k < order.length; k++) order[k] = k;
+        shuffle(order, new SplittableRandom(1));
+        benchOpen("Percolation", percolationN, order, () -> {
+            Percolation perc = new Percolation(percolationN);
+            return perc::open;
+        });
+        benchOpen("LeanPercolation", percolationN, order, () -> {
+            LeanPercolation perc = new LeanPercolation(percolationN);
+            return perc::open;
+        });
+        benchOpen("CompactPercolation", percolationN, order, () -> {
+            CompactPercolation perc = new CompactPercolation(percolationN);
+            return perc::open;
+        });
+
+        for (int n : new int[] { 64, 256, percolationN }) {
+            int trials = Math.max(1, (1 << 20) / (n * n));
+            run(String.format("stats  trials  n=%-8d", n), trials, () -> new PercolationStats(n, trials, 42L));
+        }
+    }
+
+    private interface Union {
+        void union(int p, int q);
+    }
+
+    private interface Connected {
+        boolean connected(int p, int q);
+    }
+
+    private static UF wrap(Union union, Connected connected) {
+        return new UF() {
+            public void union(int p, int q) {
+                union.union(p, q);
+            }
+
+            public boolean connected(int p, int q) {
+                return connected.connected(p, q);
+            }
+        };
+    }
+
+    // the pairs of one access pattern, pairs[0] = p's, pairs[1] = q's
+    private static int[][] pairs(String pattern, int n) {
+        SplittableRandom rng = new SplittableRandom(n);
+        if (pattern.equals("random")) {
+            int[][] pairs = new int[2][n];
+            for (int i = 0; i < n; i++) {
+                pairs[0][i] = rng.nextInt(n);
+                pairs[1][i] = rng.nextInt(n);
+            }
+            return pairs;
+        }
+        if (pattern.equals("chain")) {
+            int[][] pairs = new int[2][n - 1];
+            for (int i = 0; i < n - 1; i++) {
+                pairs[0][i] = i;
+                pairs[1][i] = i + 1;
+            }
+            return pairs;
+        }
+        // grid: every horizontal and vertical edge of a side-by-side grid, shuffled
+        int side = (int) Math.sqrt(n);
+        int[] edges = new int[2 * side * (side - 1)];
+        int e = 0;
+        for (int site = 0; site < side * side; site++) {
+            if (site % side < side - 1) edges[e++] = 2 * site;          // right neighbour
+            if (site / side < side - 1) edges[e++] = 2 * site + 1;      // bottom neighbour
+        }
+        shuffle(edges, rng);
+        int[][] pairs = new int[2][edges.length];
+        for (int i = 0; i < edges.length; i++) {
+            int site = edges[i] >>> 1;
+            pairs[0][i] = site;
+            pairs[1][i] = (edges[i] & 1) == 0 ? site + 1 : site + side;
+        }
+        return pairs;
+    }
+
+    // one op = one union followed by one connected() on the same pattern
+    private static void benchUF(String name, String pattern, int n, int[][] pairs, IntFunction<UF> factory) {
+        int[] ps = pairs[0];
+        int[] qs = pairs[1];
+        // for the chain, query the deepest element against the others
+        int[] queries = pattern.equals("chain") ? new int[ps.length] : ps;
+        run(String.format("uf %-7s %-27s %8d", pattern, name, n), ps.length, () -> {
+            UF uf = factory.apply(n);
+            for (int i = 0; i < ps.length; i++) uf.union(ps[i], qs[i]);
+            int hits = 0;
+            for (int i = 0; i < ps.length; i++) if (uf.connected(queries[i], qs[i])) hits++;
+            return hits;
+        });
+    }
+
+    // one op = one union or one connected(), reads interleaved between the unions
+    private static void benchReadHeavy(int n) {
+        int[][] unions = pairs("random", n);
+        for (int reads : new int[] { 1, 10, 100, 1000 }) {
+            int[][] queries = pairs("random", (int) Math.min((long) n * reads, 1 << 26));
+            for (int q = 0; q < queries[0].length; q++) {
+                queries[0][q] %= n;
+                queries[1][q] %= n;
+            }
+            for (String name : new String[] { "QuickFindUF", "WeightedQuickUnionUF" }) {
+                IntFunction<UF> factory = name.equals("QuickFindUF")
+                        ? size -> {
+                            QuickFindUF uf = new QuickFindUF(size);
+                            return wrap(uf::union, uf::connected);
+                        }
+                        : size -> {
+                            WeightedQuickUnionUF uf = new WeightedQuickUnionUF(size);
+                            return wrap(uf::union, uf::connected);
+                        };
+                int[] qs = queries[0];
+                int[] rs = queries[1];
+                run(String.format("mix 1:%-5d %-27s %8d", reads, name, n), (long) n * (reads + 1), () -> {
+                    UF uf = factory.apply(n);
+                    int hits = 0;
+                    int k = 0;
+                    for (int i = 0; i < n; i++) {
+                        uf.union(unions[0][i], unions[1][i]);
+                        for (int r = 0; r < reads; r++, k++) {
+                            if (k == qs.length) k = 0;
+                            if (uf.connected(qs[k], rs[k])) hits++;
+                        }
+                    }
+                    return hits;
+                });
+            }
+        }
+    }
+
+    private interface Opener {
+        void open(int site);
+    }
+
+    // one op = one open() call, sites opened in a fixed random order until all are open
+    private static void benchOpen(String name, int n, int[] order, Supplier<Opener> factory) {
+        run(String.format("open   %-28s n=%-8d", name, n), order.length, () -> {
+            Opener perc = factory.get();
+            for (int site : order) perc.open(site);
+            return perc;
+        });
+    }
+
+    /*
+     * opens sites of one random order until the grid percolates, on a reused engine;
+     * large grids take seconds per trial, so fewer iterations than run() uses
+     */
+    private static void benchLayout(int n) {
+        int[] order = new int[n * n];
+        for (int k = 0; k < order.length; k++) order[k] = k;
+        shuffle(order, new SplittableRandom(n));
+
+        for (boolean zOrder : new boolean[] { false, true }) {
+            LeanPercolation perc = new LeanPercolation(n, zOrder);
+            double[] opensPerSec = new double[3];
+            for (int i = -1; i < opensPerSec.length; i++) {       // i = -1 is the warmup
+                perc.reset();
+                long start = System.nanoTime();
+                for (int k = 0; !perc.percolates(); k++) perc.open(order[k]);
+                if (i >= 0) opensPerSec[i] = perc.numberOfOpenSites() / ((System.nanoTime() - start) / 1e9);
+            }
+            Arrays.sort(opensPerSec);
+            String name = String.format("layout %-9s n=%-8d", zOrder ? "z-order" : "row-major", n);
+            StdOut.printf("%-48s %14.0f%n", name, opensPerSec[1]);
+        }
+    }
+
+    private interface Body {
+        Object call();
+    }
+
+    // warms up, then reports the median of the timed iterations
+    private static void run(String name, long opsPerIteration, Body body) {
+        Object sink = null;
+        for (int i = 0; i < WARMUP; i++) sink = body.call();
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long gcCount = gcCount();
+        long gcMillis = gcMillis();
+        long allocated = threads.getThreadAllocatedBytes(threadId);
+
+        double[] opsPerSec = new double[MEASURED];
+        for (int i = 0; i < MEASURED; i++) {
+            long start = System.nanoTime();
+            sink = body.call();
+            opsPerSec[i] = opsPerIteration / ((System.nanoTime() - start) / 1e9);
+        }
+
+        allocated = threads.getThreadAllocatedBytes(threadId) - allocated;
+        Arrays.sort(opsPerSec);
+        StdOut.printf("%-48s %14.0f %12.1f %6d %8d%n", name, opsPerSec[MEASURED / 2],
+                      (double) allocated / ((long) MEASURED * opsPerIteration),
+                      gcCount() - gcCount, gcMillis() - gcMillis);
+        if (sink == null) StdOut.println();     // keeps the result alive
+    }
+
+    private static long gcCount() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) total += gc.getCollectionCount();
+        return total;
+    }
+
+    private static long gcMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) total += gc.getCollectionTime();
+        return total;
+    }
+
+    // Fisher-Yates shuffle
+    private static void shuffle(int[] a, SplittableRandom rng) {
+        for (int i = a.length - 1; i > 0; i--) {
+            int j = rng.nextInt(i + 1);
+            int swap = a[i];
+            a[i] = a[j];
+            a[j] = swap;
+        }
+    }
+}
@@ -0,0 +1,292 @@
+import edu.princeton.cs.algs4.StdOut;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/******************************************************************************
+ *  Compilation:  javac-algs4 UFMetrics.java
+ *  Execution:    java-algs4 -Duf.metrics=true UFMetrics [n]
+ *
+ *  Opt-in counters for the union-find classes, to see what the notes in
+ *  QuickUnionUF and WeightedQuickUnionUF predict (tall trees, N array
+ *  accesses per find, path halving keeping paths short) actually happen
+ *  on a given workload.
+ *
+ *  Per structure: finds, unions, no-op unions (already connected), array
+ *  accesses, a histogram of find path lengths (links followed to reach
+ *  the root) and the longest path seen, which is a lower bound on the
+ *  height of the tallest tree. Percolation also counts opens and the
+ *  union calls they make.
+ *
+ *  Instrumented: QuickFindUF, QuickUnionUF, WeightedQuickUnionUF,
+ *  CompactUF, ConcurrentUF (a lost link CAS counts as one extra access)
+ *  and TimestampedUF (find and union, not the connectedSince and
+ *  connectionTimes history queries), plus Percolation. Classes built
+ *  on one of these are counted through it; the union-finds written out
+ *  inside LargePercolation, HoshenKopelman and OfflinePercolation are not.
+ *
+ *  Off by default. ENABLED is a static final read once from the system
+ *  property uf.metrics, so the JIT folds "if (UFMetrics.ENABLED)" away and
+ *  the instrumented classes run exactly as before. When on, the counters
+ *  are LongAdders (cheap under contention) and can be read two ways:
+ *
+ *  snapshot()   a consistent-enough copy of the counters of one structure
+ *  JFR          an algorithms.UnionFind event per structure every second,
+ *               e.g. java -Duf.metrics=true -XX:StartFlightRecording=...
+ *
+ *  % java-algs4 -Duf.metrics=true UFMetrics 100000
+ *****************************************************************************/
+
+public class UFMetrics {
+    public static final boolean ENABLED = Boolean.getBoolean("uf.metrics");
+
+    // path lengths 0 to HISTOGRAM - 2 get a bucket each, longer ones share the last
+    private static final int HISTOGRAM = 64;
+
+    private static final List<UFMetrics> REGISTERED = new CopyOnWriteArrayList<>();
+
+    static {
+        if (ENABLED) {
+            FlightRecorder.addPeriodicEvent(MetricsEvent.class, () -> {
+                for (UFMetrics metrics : REGISTERED) metrics.snapshot().commit();
+            });
+        }
+    }
+
+    private final String structure;
+    private final LongAdder finds = new LongAdder();
+    private final LongAdder links = new LongAdder();        // sum of the find path lengths
+    private final LongAdder unions = new LongAdder();
+    private final LongAdder noOpUnions = new LongAdder();
+    private final LongAdder arrayAccesses = new LongAdder();
+    private final LongAdder opens = new LongAdder();
+    private final LongAdder unionsInOpens = new LongAdder();
+    private final LongAdder[] pathLengths = new LongAdder[HISTOGRAM];
+    private final AtomicInteger maxPathLength = new AtomicInteger();
+
+    private UFMetrics(String structure) {
+        this.structure = structure;
+        for (int i = 0; i < HISTOGRAM; i++) this.pathLengths[i] = new LongAdder();
+    }
+
+    // the counters of one structure (one per class, shared by all its instances)
+    public static UFMetrics register(String structure) {
+        UFMetrics metrics = new UFMetrics(structure);
+        REGISTERED.add(metrics);
+        return metrics;
+    }
+
+    // every registered structure, in registration order
+    public static List<UFMetrics> all() {
+        return REGISTERED;
+    }
+
+    // a find that followed pathLength links and touched the arrays that many times
+    void find(int pathLength, int accesses) {
+        this.finds.increment();
+        this.links.add(pathLength);
+        this.arrayAccesses.add(accesses);
+        this.pathLengths[Math.min(pathLength, HISTOGRAM - 1)].increment();
+        if (pathLength > this.maxPathLength.get()) this.maxPathLength.accumulateAndGet(pathLength, Math::max);
+    }
+
+    // a union (not counting its finds), merged = false if p and q were already connected
+    void union(boolean merged, int accesses) {
+        if (merged) this.unions.increment();
+        else this.noOpUnions.increment();
+        this.arrayAccesses.add(accesses);
+    }
+
+    // array accesses outside find and union
+    void access(int accesses) {
+        this.arrayAccesses.add(accesses);
+    }
+
+    // Percolation.open of a closed site, making that many union calls
+    void open(int unionCalls) {
+        this.opens.increment();
+        this.unionsInOpens.add(unionCalls);
+    }
+
+    // zeroes every counter
+    public void reset() {
+        this.finds.reset();
+        this.links.reset();
+        this.unions.reset();
+        this.noOpUnions.reset();
+        this.arrayAccesses.reset();
+        this.opens.reset();
+        this.unionsInOpens.reset();
+        for (LongAdder bucket : this.pathLengths) bucket.reset();
+        this.maxPathLength.set(0);
+    }
+
+    // copy of the counters; not atomic across counters while updates are running
+    public Snapshot snapshot() {
+        long[] histogram = new long[HISTOGRAM];
+        for (int i = 0; i < HISTOGRAM; i++) histogram[i] = this.pathLengths[i].sum();
+        return new Snapshot(this.structure, this.finds.sum(), this.links.sum(), this.unions.sum(), this.noOpUnions.sum(),
+                            this.arrayAccesses.sum(), this.opens.sum(), this.unionsInOpens.sum(),
+                            this.maxPathLength.get(), histogram);
+    }
+
+    public static class Snapshot {
+        public final String structure;
+        public final long finds;
+        public final long links;                // links followed by all finds together
+        public final long unions;               // unions that merged two components
+        public final long noOpUnions;           // unions of already connected elements
+        public final long arrayAccesses;
+        public final long opens;                // Percolation only
+        public final long unionsInOpens;
+        public final int maxPathLength;         // longest find path seen, not capped by the histogram
+        private final long[] histogram;         // histogram[k] = finds that followed k links (last bucket: k or more)
+
+        Snapshot(String structure, long finds, long links, long unions, long noOpUnions, long arrayAccesses,
+                 long opens, long unionsInOpens, int maxPathLength, long[] histogram) {
+            this.structure = structure;
+            this.finds = finds;
+            this.links = links;
+            this.unions = unions;
+            this.noOpUnions = noOpUnions;
+            this.arrayAccesses = arrayAccesses;
+            this.opens = opens;
+            this.unionsInOpens = unionsInOpens;
+            this.maxPathLength = maxPathLength;
+            this.histogram = histogram;
+        }
+
+        // number of finds that followed exactly k links (k or more for the last bucket)
+        public long pathLengthCount(int k) {
+            return k < this.histogram.length ? this.histogram[k] : 0;
+        }
+
+        public double meanPathLength() {
+            return this.finds == 0 ? 0.0 : (double) this.links / this.finds;
+        }
+
+        // smallest k such that a fraction q of the finds followed at most k links
+        public int pathLengthPercentile(double q) {
+            long total = 0;
+            for (long count : this.histogram) total += count;
+            long seen = 0;
+            for (int k = 0; k < this.histogram.length; k++) {
+                seen += this.histogram[k];
+                if (seen > 0 && seen >= q * total) return k;
+            }
+            return this.histogram.length - 1;
+        }
+
+        // the last bucket holds everything from HISTOGRAM - 1 links up
+        private String percentile(double q) {
+            int k = this.pathLengthPercentile(q);
+            return k == this.histogram.length - 1 ? k + "+" : Integer.toString(k);
+        }
+
+        private void commit() {
+            MetricsEvent event = new MetricsEvent();
+            event.structure = this.structure;
+            event.finds = this.finds;
+            event.unions = this.unions;
+            event.noOpUnions = this.noOpUnions;
+            event.arrayAccesses = this.arrayAccesses;
+            event.opens = this.opens;
+            event.meanPathLength = this.meanPathLength();
+            event.p99PathLength = this.pathLengthPercentile(0.99);
+            event.maxPathLength = this.maxPathLength;
+            event.commit();
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder s = new StringBuilder(this.structure).append(':');
+            if (this.finds + this.unions + this.noOpUnions > 0) {
+                s.append(String.format("%n  %-16s %d", "finds", this.finds));
+                s.append(String.format("%n  %-16s %d", "unions", this.unions));
+                s.append(String.format("%n  %-16s %d", "no-op unions", this.noOpUnions));
+                s.append(String.format("%n  %-16s %d", "array accesses", this.arrayAccesses));
+            }
+            if (this.opens > 0) {
+                s.append(String.format("%n  %-16s %d (%.2f unions each)", "opens", this.opens,
+                                       (double) this.unionsInOpens / this.opens));
+            }
+            if (this.finds > 0) {
+                s.append(String.format("%n  %-16s mean %.2f, p50 %s, p99 %s, max %d", "find path",
+                                       this.meanPathLength(), percentile(0.5), percentile(0.99),
+                                       this.maxPathLength));
+            }
+            return s.toString();
+        }
+    }
+
+    @Name("algorithms.UnionFind")
+    @Label("Union-Find Metrics")
+    @Category("Union-Find")
+    @Description("Counters of one union-find structure since the start (or last reset)")
+    @Period("1 s")
+    static class MetricsEvent extends Event {
+        @Label("Structure")
+        String structure;
+        @Label("Finds")
+        long finds;
+        @Label("Unions")
+        long unions;
+        @Label("No-op Unions")
+        long noOpUnions;
+        @Label("Array Accesses")
+        long arrayAccesses;
+        @Label("Opens")
+        long opens;
+        @Label("Mean Find Path Length")
+        double meanPathLength;
+        @Label("99th Percentile Find Path Length")
+        int p99PathLength;
+        @Label("Max Find Path Length")
+        int maxPathLength;
+    }
+
+    // test client: random unions and finds on every instrumented structure
+    public static void main(String[] args) {
+        if (!ENABLED) {
+            StdOut.println("metrics are off, run with -Duf.metrics=true");
+            return;
+        }
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+
+        SplittableRandom rng = new SplittableRandom(1);
+        WeightedQuickUnionUF weighted = new WeightedQuickUnionUF(n);
+        QuickFindUF quickFind = new QuickFindUF(n);
+        int m = Math.min(n, 10000);                 // QuickUnionUF can be quadratic, keep it small
+        QuickUnionUF quickUnion = new QuickUnionUF(m);
+        CompactUF compact = new CompactUF(n);
+        ConcurrentUF concurrent = new ConcurrentUF(n);
+        TimestampedUF timestamped = new TimestampedUF(n);
+        for (int i = 0; i < n; i++) {
+            int p = rng.nextInt(n);
+            int q = rng.nextInt(n);
+            weighted.union(p, q);
+            quickFind.union(p, q);
+            quickUnion.union(p % m, q % m);
+            compact.union(p, q);
+            concurrent.union(p, q);
+            timestamped.union(p, q, i);
+        }
+
+        int side = (int) Math.sqrt(n);
+        Percolation perc = new Percolation(side);
+        while (!perc.percolates()) perc.open(rng.nextInt(side * side));
+
+        for (UFMetrics metrics : all()) StdOut.println(metrics.snapshot());
+    }
+}
@@ -1,8 +1,21 @@
+import edu.princeton.cs.algs4.In;
 import edu.princeton.cs.algs4.StdIn;
 import edu.princeton.cs.algs4.StdOut;
+import edu.princeton.cs.algs4.Stopwatch;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
 
 /***************************************************************
- * Refer to the notes on QuickUnion.java.
+ * Refer to the notes on QuickUnionUF.java.
  * This code is a great improvement over QuickUnion as it takes
  * into account the depth of the trees, thereby weighing them.
  *
@@ -29,6 +42,8 @@ import edu.princeton.cs.algs4.StdOut;
  * Throws IllegalArgumentException if n < 0.
  */
 public class WeightedQuickUnionUF {
+    private static final UFMetrics METRICS = UFMetrics.register("WeightedQuickUnionUF");
+
     private int[] parent;       // parent[i] = parent of i
     private int[] size;     // size[i] = number of elements in subtree rooted at i
     private int count;      // number of components
@@ -47,6 +62,13 @@ public class WeightedQuickUnionUF {
         }
     }
 
+    // puts every element back into its own set, without reallocating
+    public void reset() {
+        count = parent.length;
+        for (int i = 0; i < parent.length; i++) parent[i] = i;
+        Arrays.fill(size, 1);
+    }
+
     // returns the number of sets
     public int count() {
         return count;
@@ -55,15 +77,29 @@ public class WeightedQuickUnionUF {
     // Chase parent pointers until root of tree is reached
     private int root(int p) {
         validate(p);  // throws exception if p isn't a valid index
+        int links = 0;
         while (p != parent[p]) {
             // Path compression - makes every other node in path point to its grandparent
             parent[p] = parent[parent[p]];
             p = parent[p];
+            links++;
         }
+        // 5 array accesses per link followed, 1 for the final check
+        if (UFMetrics.ENABLED) METRICS.find(links, 5 * links + 1);
         return p;
     }
 
-    // identical to QuickUnion.java (code is unchanged)
+    // returns the canonical element (root) of the set containing p
+    public int find(int p) {
+        return root(p);
+    }
+
+    // returns the number of elements in the set containing p
+    public int size(int p) {
+        return size[root(p)];
+    }
+
+    // identical to QuickUnionUF.java (code is unchanged)
     public boolean connected(int p, int q) {
         return root(p) == root(q);
     }
@@ -88,7 +124,10 @@ public class WeightedQuickUnionUF {
     public void union(int p, int q) {
         int rootP = root(p);
         int rootQ = root(q);
-        if (rootP == rootQ) return;
+        if (rootP == rootQ) {
+            if (UFMetrics.ENABLED) METRICS.union(false, 0);
+            return;
+        }
 
         if (size[rootP] < size[rootQ]) {
             parent[rootP] = rootQ;
@@ -99,6 +138,7 @@ public class WeightedQuickUnionUF {
             size[rootP] += size[rootQ];
         }
         count--;
+        if (UFMetrics.ENABLED) METRICS.union(true, 5);
     }
 
     /**
@@ -107,19 +147,99 @@ public class WeightedQuickUnionUF {
      * in the pair represents some element;
      * if the elements are in different sets, merge the two sets
      * and print the pair to standard output.
+     * <p>
+     * For large inputs, pass a file instead (see PairInput for the formats):
+     * <p>
+     * java-algs4 WeightedQuickUnionUF file [-quiet]
+     * memory-maps the file (text or binary), buffers the output, and with
+     * -quiet prints only the number of components.
+     * <p>
+     * java-algs4 WeightedQuickUnionUF -convert in.txt out.bin
+     * writes the binary pair format.
+     * <p>
+     * java-algs4 WeightedQuickUnionUF -bench file.txt
+     * prints pairs per second for Scanner-based In, the mapped text parser
+     * and the binary format, and checks that they agree on the component count.
      *
      * @param args the command-line arguments
      */
     public static void main(String[] args) {
-        int n = StdIn.readInt();
-        WeightedQuickUnionUF uf = new WeightedQuickUnionUF(n);
-        while (!StdIn.isEmpty()) {
-            int p = StdIn.readInt();
-            int q = StdIn.readInt();
-            if (uf.root(p) == uf.root(q)) continue;
-            uf.union(p, q);
-            StdOut.println(p + " " + q);
+        if (args.length == 0) {
+            int n = StdIn.readInt();
+            WeightedQuickUnionUF uf = new WeightedQuickUnionUF(n);
+            while (!StdIn.isEmpty()) {
+                int p = StdIn.readInt();
+                int q = StdIn.readInt();
+                if (uf.root(p) == uf.root(q)) continue;
+                uf.union(p, q);
+                StdOut.println(p + " " + q);
+            }
+            StdOut.println(uf.count() + " components");
+            return;
+        }
+
+        if (args[0].equals("-convert")) {
+            long pairs = PairInput.writeBinary(Paths.get(args[1]), Paths.get(args[2]));
+            StdOut.println(pairs + " pairs written");
+            return;
+        }
+
+        if (args[0].equals("-bench")) {
+            bench(Paths.get(args[1]));
+            return;
+        }
+
+        boolean quiet = args.length > 1 && args[1].equals("-quiet");
+        PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16));
+        try (PairInput input = new PairInput(Paths.get(args[0]))) {
+            WeightedQuickUnionUF uf = new WeightedQuickUnionUF(input.n());
+            input.forEach((p, q) -> {
+                if (uf.root(p) == uf.root(q)) return;
+                uf.union(p, q);
+                if (!quiet) out.append(Integer.toString(p)).append(' ').append(Integer.toString(q)).append('\n');
+            });
+            out.println(uf.count() + " components");
+        }
+        out.flush();
+    }
+
+    // pairs per second, including the unions, without output
+    private static void bench(Path text) {
+        Stopwatch timer = new Stopwatch();
+        In in = new In(text.toFile());
+        WeightedQuickUnionUF scanned = new WeightedQuickUnionUF(in.readInt());
+        long pairs = 0;
+        while (!in.isEmpty()) {
+            scanned.union(in.readInt(), in.readInt());
+            pairs++;
+        }
+        StdOut.printf("%-20s %14.0f pairs/sec%n", "In (Scanner)", pairs / timer.elapsedTime());
+
+        Path binary;
+        try {
+            binary = Files.createTempFile("pairs", ".bin");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        PairInput.writeBinary(text, binary);
+
+        for (Path file : new Path[] { text, binary }) {
+            timer = new Stopwatch();
+            try (PairInput input = new PairInput(file)) {
+                WeightedQuickUnionUF uf = new WeightedQuickUnionUF(input.n());
+                pairs = input.forEach(uf::union);
+                StdOut.printf("%-20s %14.0f pairs/sec%n", input.isBinary() ? "binary" : "mapped text", pairs / timer.elapsedTime());
+                if (uf.count() != scanned.count()) {
+                    throw new IllegalStateException(uf.count() + " components, expected " + scanned.count());
+                }
+            }
+        }
+        StdOut.println(scanned.count() + " components");
+
+        try {
+            Files.delete(binary);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
-        StdOut.println(uf.count() + " components");
     }
 }